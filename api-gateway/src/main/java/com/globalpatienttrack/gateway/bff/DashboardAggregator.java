@@ -0,0 +1,234 @@
+package com.globalpatienttrack.gateway.bff;
+
+import com.globalpatienttrack.gateway.limit.ConcurrencyLimiterRegistry;
+import com.globalpatienttrack.gateway.limit.GradientConcurrencyLimiter;
+import com.globalpatienttrack.gateway.limit.GradientConcurrencyLimiter.Outcome;
+import com.globalpatienttrack.shared.security.IdentityEnvelope;
+import com.globalpatienttrack.shared.security.TokenClaims;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.cloud.client.loadbalancer.reactive.LoadBalancedExchangeFilterFunction;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fans one dashboard request out to the backends in parallel and merges the answers into
+ * a single payload. Each part goes through the same per-backend concurrency limit, bulkhead
+ * and circuit breaker as the routes, so its time limit is the backend's
+ * (resilience4j.timelimiter). A failed part does not fail the dashboard: it is null in the
+ * payload and explained under "errors".
+ */
+@Component
+public class DashboardAggregator {
+
+    private final WebClient webClient;
+    private final ReactiveCircuitBreakerFactory<?, ?> circuitBreakerFactory;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final ConcurrencyLimiterRegistry limiterRegistry;
+    private final MeterRegistry meterRegistry;
+    private final IdentityEnvelope identityEnvelope;
+
+    public DashboardAggregator(LoadBalancedExchangeFilterFunction loadBalancer, HttpClient httpClient,
+                               ReactiveCircuitBreakerFactory<?, ?> circuitBreakerFactory,
+                               BulkheadRegistry bulkheadRegistry, ConcurrencyLimiterRegistry limiterRegistry,
+                               MeterRegistry meterRegistry,
+                               @Value("${gateway.bff.max-body-bytes:2097152}") int maxBodyBytes,
+                               @Value("${gateway.identity.signing-key:}") String identitySigningKey,
+                               @Value("${gateway.identity.ttl-seconds:30}") long identityTtlSeconds) {
+        this.circuitBreakerFactory = circuitBreakerFactory;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.limiterRegistry = limiterRegistry;
+        this.meterRegistry = meterRegistry;
+        this.identityEnvelope = IdentityEnvelope.fromKey(identitySigningKey, identityTtlSeconds);
+        // Gateway HttpClient (shared connection pool), base URLs http://<service-id> resolved through Eureka
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxBodyBytes))
+                .filter(loadBalancer)
+                .build();
+    }
+
+    /**
+     * Fetches all parts at once, on behalf of the caller whose token was validated.
+     */
+    public Mono<Dashboard> aggregate(String authorization, TokenClaims claims, List<Part> parts) {
+        String envelope = identityEnvelope == null ? null : identityEnvelope.issue(claims.getUsername(),
+                claims.getRole(), claims.getUserId(), claims.getOrganizationId(), claims.getExpiresAt());
+
+        List<Mono<PartResult>> calls = parts.stream()
+                .map(part -> fetch(part, authorization, claims, envelope))
+                .toList();
+
+        return Mono.zip(calls, results -> {
+            Dashboard dashboard = new Dashboard();
+            for (Object result : results) {
+                dashboard.add((PartResult) result);
+            }
+            return dashboard;
+        });
+    }
+
+    private Mono<PartResult> fetch(Part part, String authorization, TokenClaims claims, String envelope) {
+        GradientConcurrencyLimiter limiter = limiterRegistry.limiter(part.serviceId);
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(part.serviceId);
+
+        // Only 5xx and transport errors count against the backend's circuit breaker
+        Mono<ResponseEntity<Object>> call = Mono.defer(() -> {
+            if (!bulkhead.tryAcquirePermission()) {
+                return Mono.error(BulkheadFullException.createBulkheadFullException(bulkhead));
+            }
+            return webClient.get()
+                    .uri("http://" + part.serviceId + part.uriTemplate, part.uriVariables)
+                    .headers(headers -> {
+                        headers.set(HttpHeaders.AUTHORIZATION, authorization);
+                        if (claims.getUserId() != null) {
+                            headers.set("X-User-Id", String.valueOf(claims.getUserId()));
+                        }
+                        if (envelope != null) {
+                            headers.set(IdentityEnvelope.HEADER, envelope);
+                        }
+                    })
+                    .exchangeToMono(response -> response.statusCode().is5xxServerError()
+                            ? response.createException().flatMap(Mono::error)
+                            : response.toEntity(Object.class))
+                    .doFinally(signal -> bulkhead.onComplete());
+        });
+
+        Mono<ResponseEntity<Object>> limited = Mono.defer(() -> {
+            if (!limiter.tryAcquire()) {
+                limiterRegistry.rejected(part.serviceId);
+                return Mono.error(new ConcurrencyLimitExceededException(part.serviceId));
+            }
+            long start = System.nanoTime();
+            return circuitBreakerFactory.create(part.serviceId).run(call, Mono::error)
+                    .doOnSuccess(response -> limiter.release(start, Outcome.SUCCESS))
+                    .doOnError(error -> limiter.release(start,
+                            error instanceof TimeoutException ? Outcome.DROPPED : Outcome.IGNORED))
+                    .doOnCancel(() -> limiter.release(start, Outcome.IGNORED));
+        });
+
+        return limited
+                .map(response -> toResult(part, response))
+                .onErrorResume(error -> Mono.just(PartResult.failed(part, reason(part, error))))
+                .doOnNext(result -> meterRegistry.counter("gateway.bff.parts",
+                        "service", part.serviceId, "outcome", result.error == null ? "ok" : "failed").increment());
+    }
+
+    private static PartResult toResult(Part part, ResponseEntity<Object> response) {
+        if (response.getStatusCode().is2xxSuccessful()) {
+            return PartResult.of(part, response.getBody());
+        }
+        // Nothing recorded yet (e.g. no medical details) is not a failure
+        if (response.getStatusCode() == HttpStatus.NOT_FOUND) {
+            return PartResult.of(part, null);
+        }
+        return PartResult.failed(part, part.serviceId + " answered " + response.getStatusCode().value());
+    }
+
+    private static String reason(Part part, Throwable error) {
+        if (error instanceof CallNotPermittedException) {
+            return part.serviceId + " is temporarily unavailable, please retry shortly";
+        }
+        if (error instanceof BulkheadFullException || error instanceof ConcurrencyLimitExceededException) {
+            return part.serviceId + " is at capacity, please retry shortly";
+        }
+        if (error instanceof TimeoutException) {
+            return part.serviceId + " did not respond in time";
+        }
+        if (error instanceof WebClientResponseException responseException) {
+            return part.serviceId + " answered " + responseException.getStatusCode().value();
+        }
+        return part.serviceId + " is currently unavailable";
+    }
+
+    private static final class ConcurrencyLimitExceededException extends RuntimeException {
+        private ConcurrencyLimitExceededException(String serviceId) {
+            super(serviceId + " is at its concurrency limit");
+        }
+    }
+
+    /**
+     * One backend call of a dashboard: the key in the payload, the service id and a GET path.
+     */
+    public static final class Part {
+        private final String name;
+        private final String serviceId;
+        private final String uriTemplate;
+        private final Object[] uriVariables;
+
+        private Part(String name, String serviceId, String uriTemplate, Object... uriVariables) {
+            this.name = name;
+            this.serviceId = serviceId;
+            this.uriTemplate = uriTemplate;
+            this.uriVariables = uriVariables;
+        }
+
+        public static Part of(String name, String serviceId, String uriTemplate, Object... uriVariables) {
+            return new Part(name, serviceId, uriTemplate, uriVariables);
+        }
+    }
+
+    private static final class PartResult {
+        private final String name;
+        private final Object value;
+        private final String error;
+
+        private PartResult(String name, Object value, String error) {
+            this.name = name;
+            this.value = value;
+            this.error = error;
+        }
+
+        private static PartResult of(Part part, Object value) {
+            return new PartResult(part.name, value, null);
+        }
+
+        private static PartResult failed(Part part, String error) {
+            return new PartResult(part.name, null, error);
+        }
+    }
+
+    /**
+     * The merged payload: every part by name, "errors" for the parts that failed, and
+     * "partial" when there are any.
+     */
+    public static final class Dashboard {
+        private final Map<String, Object> data = new LinkedHashMap<>();
+        private final Map<String, String> errors = new LinkedHashMap<>();
+
+        private void add(PartResult result) {
+            data.put(result.name, result.value);
+            if (result.error != null) {
+                errors.put(result.name, result.error);
+            }
+        }
+
+        public boolean isUnavailable() {
+            return !data.isEmpty() && errors.size() == data.size();
+        }
+
+        public Map<String, Object> getBody() {
+            Map<String, Object> body = new LinkedHashMap<>(data);
+            body.put("errors", errors);
+            body.put("partial", !errors.isEmpty());
+            return body;
+        }
+    }
+}
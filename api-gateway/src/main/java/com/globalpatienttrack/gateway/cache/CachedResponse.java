@@ -0,0 +1,37 @@
+package com.globalpatienttrack.gateway.cache;
+
+import org.springframework.http.MediaType;
+
+/**
+ * A cached 200 response: the body, its content type and the ETag derived from the body.
+ */
+public class CachedResponse {
+
+    private final byte[] body;
+    private final MediaType contentType;
+    private final String eTag;
+    private final long expiresAtMillis;
+
+    public CachedResponse(byte[] body, MediaType contentType, String eTag, long expiresAtMillis) {
+        this.body = body;
+        this.contentType = contentType;
+        this.eTag = eTag;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public MediaType getContentType() {
+        return contentType;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+}
@@ -0,0 +1,69 @@
+package com.globalpatienttrack.gateway.cache;
+
+import com.globalpatienttrack.shared.cache.ExpiringCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * In-memory store behind the ResponseCache gateway filter: successful GET responses of
+ * allow-listed routes, each kept for its route's TTL. Bounded by entry count and by
+ * body size - larger bodies are simply not cached.
+ */
+@Component
+public class GatewayResponseCache {
+
+    private final ExpiringCache<String, CachedResponse> entries;
+
+    private final int maxEntryBytes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+
+    public GatewayResponseCache(MeterRegistry meterRegistry,
+                                @Value("${gateway.response-cache.max-size:10000}") int maxSize,
+                                @Value("${gateway.response-cache.max-entry-bytes:262144}") int maxEntryBytes) {
+        this.entries = new ExpiringCache<>(maxSize, Duration.ofSeconds(30));
+        this.maxEntryBytes = maxEntryBytes;
+        this.hits = meterRegistry.counter("gateway.response.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("gateway.response.cache.requests", "result", "miss");
+        this.notModified = meterRegistry.counter("gateway.response.cache.not.modified");
+        Gauge.builder("gateway.response.cache.size", entries, ExpiringCache::size)
+                .register(meterRegistry);
+        Gauge.builder("gateway.response.cache.hit.ratio", this, GatewayResponseCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the fresh entry for the key and counts a hit, or returns null and counts a miss.
+     */
+    public CachedResponse get(String key) {
+        CachedResponse entry = entries.get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, CachedResponse response) {
+        if (response.getBody().length > maxEntryBytes) {
+            return;
+        }
+        entries.put(key, response, response.getExpiresAtMillis(), entries.stamp());
+    }
+
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
@@ -1,44 +1,55 @@
 package com.globalpatienttrack.gateway.config;
 
-import org.springframework.cloud.gateway.route.RouteLocator;
-import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.reactive.LoadBalancedExchangeFilterFunction;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class GatewayConfig {
 
+    /**
+     * The one client used for token validation calls: built once, with its own bounded
+     * keep-alive connection pool, and load-balanced across all auth-service instances
+     * registered in Eureka (base URL http://auth-service resolves like lb://auth-service).
+     */
     @Bean
-    public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
-        return builder.routes()
-                // Auth Service Routes
-                .route("auth-service", r -> r.path("/auth/**")
-                        .uri("lb://auth-service"))
-                
-                // User Data Service Routes
-                .route("user-data-service", r -> r.path("/users/**")
-                        .uri("lb://user-data-service"))
-                
-                // Admin Service Routes
-                .route("admin-service", r -> r.path("/admin/**")
-                        .uri("lb://admin-service"))
-                
-                // Doctor Service Routes
-                .route("doctor-service", r -> r.path("/doctor/**")
-                        .uri("lb://doctor-service"))
-                
-                // Patient Service Routes
-                .route("patient-service", r -> r.path("/patient/**")
-                        .uri("lb://patient-service"))
+    public WebClient authServiceWebClient(LoadBalancedExchangeFilterFunction loadBalancer,
+                                          @Value("${gateway.auth-client.base-url:http://auth-service}") String baseUrl,
+                                          @Value("${gateway.auth-client.max-connections:200}") int maxConnections,
+                                          @Value("${gateway.auth-client.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+                                          @Value("${gateway.auth-client.pending-acquire-timeout-ms:2000}") long pendingAcquireTimeoutMillis,
+                                          @Value("${gateway.auth-client.max-idle-time-ms:30000}") long maxIdleTimeMillis,
+                                          @Value("${gateway.auth-client.max-life-time-ms:300000}") long maxLifeTimeMillis,
+                                          @Value("${gateway.auth-client.connect-timeout-ms:1000}") int connectTimeoutMillis,
+                                          @Value("${gateway.auth-client.response-timeout-ms:2000}") long responseTimeoutMillis) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("auth-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMillis))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMillis))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMillis))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMillis));
 
-                // Lab Service Routes
-                .route("lab-service", r -> r.path("/lab/**")
-                        .uri("lb://lab-service"))
-                
-                // Health Check Route
-                .route("health-check", r -> r.path("/health")
-                        .uri("http://localhost:8080"))
-                
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(loadBalancer)
                 .build();
     }
 }
\ No newline at end of file
@@ -24,10 +24,18 @@ public class SecurityConfig {
                 .authorizeExchange(exchanges -> exchanges
                         // Allow CORS preflight
                         .pathMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
+                        // Service-to-service endpoints are never exposed through the gateway, nor through
+                        // the discovery-locator routes (/<service-id>/...)
+                        .pathMatchers("/auth/internal/**", "/*/auth/internal/**",
+                                "/users/internal/**", "/*/users/internal/**").denyAll()
+                        // Circuit breaker fallbacks are only reached through internal forwards
+                        .pathMatchers("/fallback/**").denyAll()
                         // Public endpoints - no authentication needed
                         .pathMatchers("/auth/**", "/actuator/**", "/health").permitAll()
                         // Protected endpoints - authentication will be added via custom filter later
                         .pathMatchers("/admin/**", "/doctor/**", "/patient/**", "/lab/**").permitAll()
+                        // Dashboard aggregation - BffController validates the token itself
+                        .pathMatchers("/bff/**").permitAll()
                         // All other endpoints
                         .anyExchange().permitAll()
                 )
@@ -0,0 +1,104 @@
+package com.globalpatienttrack.gateway.controller;
+
+import com.globalpatienttrack.gateway.bff.DashboardAggregator;
+import com.globalpatienttrack.gateway.bff.DashboardAggregator.Part;
+import com.globalpatienttrack.gateway.security.TokenValidator;
+import com.globalpatienttrack.shared.security.TokenClaims;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * First-load data of each dashboard in one round trip: the gateway calls the backends in
+ * parallel instead of the browser calling them one after another. Parts are keyed to the
+ * caller's own user and organization from the validated token.
+ *
+ * Controllers are matched before gateway routes, so the route filters (Authentication,
+ * rate limits) do not run here - the token is validated in this controller.
+ */
+@RestController
+@RequestMapping("/bff")
+public class BffController {
+
+    private final TokenValidator tokenValidator;
+    private final DashboardAggregator dashboardAggregator;
+
+    public BffController(TokenValidator tokenValidator, DashboardAggregator dashboardAggregator) {
+        this.tokenValidator = tokenValidator;
+        this.dashboardAggregator = dashboardAggregator;
+    }
+
+    @GetMapping("/patient-dashboard")
+    public Mono<ResponseEntity<Map<String, Object>>> patientDashboard(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        return dashboard(authorization, "PATIENT", claims -> List.of(
+                Part.of("profile", "patient-service", "/patient/profile"),
+                Part.of("history", "patient-service", "/patient/history"),
+                Part.of("medicalDetails", "patient-service", "/patient/medical-details/{userId}", claims.getUserId()),
+                Part.of("labPrescriptions", "lab-service", "/lab/prescriptions/patient/{patientId}", claims.getUserId()),
+                Part.of("labResults", "lab-service", "/lab/results/patient/{patientId}", claims.getUserId())));
+    }
+
+    @GetMapping("/doctor-dashboard")
+    public Mono<ResponseEntity<Map<String, Object>>> doctorDashboard(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        return dashboard(authorization, "DOCTOR", claims -> List.of(
+                Part.of("profile", "doctor-service", "/doctor/profile/{doctorId}", claims.getUserId()),
+                Part.of("patients", "doctor-service", "/doctor/patients?organizationId={organizationId}",
+                        claims.getOrganizationId())));
+    }
+
+    @GetMapping("/lab-dashboard")
+    public Mono<ResponseEntity<Map<String, Object>>> labDashboard(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        return dashboard(authorization, "LABTECHNICIAN", claims -> List.of(
+                Part.of("profile", "lab-service", "/lab/technician/profile/{technicianId}", claims.getUserId()),
+                Part.of("pendingPrescriptions", "lab-service", "/lab/prescriptions/pending?organizationId={organizationId}",
+                        claims.getOrganizationId()),
+                Part.of("results", "lab-service",
+                        "/lab/results/technician?labTechnicianId={technicianId}&organizationId={organizationId}",
+                        claims.getUserId(), claims.getOrganizationId())));
+    }
+
+    private Mono<ResponseEntity<Map<String, Object>>> dashboard(String authorization, String role,
+                                                                 Function<TokenClaims, List<Part>> parts) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return Mono.just(error(HttpStatus.UNAUTHORIZED, "Missing bearer token"));
+        }
+
+        return tokenValidator.validate(authorization.substring(7))
+                .onErrorResume(e -> Mono.empty())
+                .flatMap(claims -> {
+                    if (!role.equals(claims.getRole())) {
+                        return Mono.just(error(HttpStatus.FORBIDDEN, "This dashboard is only available to " + role));
+                    }
+                    return dashboardAggregator.aggregate(authorization, claims, parts.apply(claims))
+                            .map(dashboard -> dashboard.isUnavailable()
+                                    ? ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                            .header(HttpHeaders.RETRY_AFTER, "5")
+                                            .body(dashboard.getBody())
+                                    : ResponseEntity.ok(dashboard.getBody()));
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> error(HttpStatus.UNAUTHORIZED, "Invalid or expired token")));
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", status.value());
+        errorResponse.put("error", status.getReasonPhrase());
+        errorResponse.put("message", message);
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
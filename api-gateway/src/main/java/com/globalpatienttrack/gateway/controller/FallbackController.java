@@ -0,0 +1,52 @@
+package com.globalpatienttrack.gateway.controller;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fallback of the per-route circuit breakers (fallbackUri: forward:/fallback/{service}).
+ * Answers at once with 503 and the reason, instead of letting callers wait on a failing backend.
+ * Only reachable through a forward - the security config denies direct calls.
+ */
+@RestController
+@RequestMapping("/fallback")
+public class FallbackController {
+
+    @RequestMapping("/{service}")
+    public ResponseEntity<Map<String, Object>> fallback(@PathVariable("service") String service,
+                                                        ServerWebExchange exchange) {
+        Throwable cause = exchange.getAttribute(ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR);
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        errorResponse.put("error", "Service Unavailable");
+        errorResponse.put("message", service + " " + reason(cause));
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(errorResponse);
+    }
+
+    private static String reason(Throwable cause) {
+        if (cause instanceof CallNotPermittedException) {
+            return "is temporarily unavailable, please retry shortly";
+        }
+        if (cause instanceof TimeoutException) {
+            return "did not respond in time";
+        }
+        return "is currently unavailable";
+    }
+}
@@ -0,0 +1,98 @@
+package com.globalpatienttrack.gateway.filter;
+
+import com.globalpatienttrack.gateway.limit.ConcurrencyLimiterRegistry;
+import com.globalpatienttrack.gateway.limit.GradientConcurrencyLimiter;
+import com.globalpatienttrack.gateway.limit.GradientConcurrencyLimiter.Outcome;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.SignalType;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sheds load before it reaches a saturated backend: requests beyond the backend's learned
+ * concurrency limit (see {@link GradientConcurrencyLimiter}) are rejected at once with 503.
+ * {@code AdaptiveConcurrencyLimit=<name>}, the route id by default; routes naming the same
+ * backend share its limit. Must come before the route's CircuitBreaker, so that shed
+ * requests do not count as backend failures.
+ */
+@Component
+public class AdaptiveConcurrencyLimitGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<AdaptiveConcurrencyLimitGatewayFilterFactory.Config> {
+
+    private final ConcurrencyLimiterRegistry limiterRegistry;
+
+    public AdaptiveConcurrencyLimitGatewayFilterFactory(ConcurrencyLimiterRegistry limiterRegistry) {
+        super(Config.class);
+        this.limiterRegistry = limiterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("name");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String name = config.getName() != null ? config.getName() : config.getRouteId();
+        GradientConcurrencyLimiter limiter = limiterRegistry.limiter(name);
+
+        return (exchange, chain) -> {
+            if (!limiter.tryAcquire()) {
+                limiterRegistry.rejected(name);
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                return response.setComplete();
+            }
+            long start = System.nanoTime();
+            return chain.filter(exchange).doFinally(signal -> limiter.release(start, outcome(exchange, signal)));
+        };
+    }
+
+    private static Outcome outcome(ServerWebExchange exchange, SignalType signal) {
+        Throwable cause = exchange.getAttribute(ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR);
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        int statusValue = status != null ? status.value() : 0;
+        if (cause instanceof TimeoutException || statusValue == HttpStatus.GATEWAY_TIMEOUT.value()) {
+            return Outcome.DROPPED;
+        }
+        // Open circuit, bulkhead full, client gone: no latency was observed
+        if (cause != null || statusValue == HttpStatus.SERVICE_UNAVAILABLE.value() || signal != SignalType.ON_COMPLETE) {
+            return Outcome.IGNORED;
+        }
+        return Outcome.SUCCESS;
+    }
+
+    public static class Config implements HasRouteId {
+        private String name;
+        private String routeId;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
@@ -1,20 +1,38 @@
 package com.globalpatienttrack.gateway.filter;
 
+import com.globalpatienttrack.gateway.metrics.RouteLatencyHistograms;
+import com.globalpatienttrack.gateway.security.TokenValidator;
+import com.globalpatienttrack.shared.security.IdentityEnvelope;
+import com.globalpatienttrack.shared.security.TokenClaims;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
 
 @Component
 public class AuthenticationGatewayFilterFactory extends AbstractGatewayFilterFactory<AuthenticationGatewayFilterFactory.Config> {
 
-    private final WebClient.Builder webClientBuilder;
+    /**
+     * Exchange attribute holding the validated {@link TokenClaims}, for filters that run later.
+     */
+    public static final String CLAIMS_ATTRIBUTE = AuthenticationGatewayFilterFactory.class.getName() + ".claims";
+
+    private final TokenValidator tokenValidator;
+
+    private final IdentityEnvelope identityEnvelope;
 
-    public AuthenticationGatewayFilterFactory(WebClient.Builder webClientBuilder) {
+    public AuthenticationGatewayFilterFactory(TokenValidator tokenValidator,
+                                              @Value("${gateway.identity.signing-key:}") String identitySigningKey,
+                                              @Value("${gateway.identity.ttl-seconds:30}") long identityTtlSeconds) {
         super(Config.class);
-        this.webClientBuilder = webClientBuilder;
+        this.tokenValidator = tokenValidator;
+        this.identityEnvelope = IdentityEnvelope.fromKey(identitySigningKey, identityTtlSeconds);
     }
 
     @Override
@@ -35,25 +53,41 @@ public class AuthenticationGatewayFilterFactory extends AbstractGatewayFilterFac
             }
 
             String token = authHeader.substring(7);
-            
-            // Validate token with auth service
-            return webClientBuilder.build()
-                    .get()
-                    .uri("http://auth-service:8081/auth/validate?token=" + token)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .flatMap(response -> {
-                        // Token is valid, continue
-                        return chain.filter(exchange);
-                    })
-                    .onErrorResume(error -> {
-                        // Token validation failed
-                        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
-                        return exchange.getResponse().setComplete();
-                    });
+            long start = System.nanoTime();
+
+            return tokenValidator.validate(token)
+                    .map(claims -> Optional.of(withIdentity(exchange, claims, start)))
+                    // Token validation failed - errors further down the chain are not auth failures
+                    .onErrorReturn(Optional.empty())
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(authenticated -> authenticated.isPresent()
+                            ? chain.filter(authenticated.get())
+                            : unauthorized(exchange, start));
         };
     }
 
+    /**
+     * Passes the validated identity on, so the services need not validate the token again.
+     */
+    private ServerWebExchange withIdentity(ServerWebExchange exchange, TokenClaims claims, long startNanos) {
+        exchange.getAttributes().put(CLAIMS_ATTRIBUTE, claims);
+        exchange.getAttributes().put(RouteLatencyHistograms.AUTH_NANOS_ATTRIBUTE, System.nanoTime() - startNanos);
+        if (identityEnvelope == null) {
+            return exchange;
+        }
+        String envelope = identityEnvelope.issue(claims.getUsername(), claims.getRole(),
+                claims.getUserId(), claims.getOrganizationId(), claims.getExpiresAt());
+        return exchange.mutate()
+                .request(request -> request.headers(headers -> headers.set(IdentityEnvelope.HEADER, envelope)))
+                .build();
+    }
+
+    private Mono<Void> unauthorized(ServerWebExchange exchange, long startNanos) {
+        exchange.getAttributes().put(RouteLatencyHistograms.AUTH_NANOS_ATTRIBUTE, System.nanoTime() - startNanos);
+        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+        return exchange.getResponse().setComplete();
+    }
+
     public static class Config {
         // Configuration properties if needed
     }
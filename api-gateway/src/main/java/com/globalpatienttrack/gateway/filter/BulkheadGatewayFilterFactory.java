@@ -0,0 +1,80 @@
+package com.globalpatienttrack.gateway.filter;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Caps the number of requests a route may have in flight, so one slow backend cannot hold
+ * every gateway connection. Over the cap, requests are rejected at once with 503 rather
+ * than queued. Limits come from resilience4j.bulkhead.instances.&lt;name&gt; (the route id by
+ * default); maxWaitDuration must stay 0 - waiting would block an event-loop thread.
+ */
+@Component
+public class BulkheadGatewayFilterFactory extends AbstractGatewayFilterFactory<BulkheadGatewayFilterFactory.Config> {
+
+    private final BulkheadRegistry bulkheadRegistry;
+    private final MeterRegistry meterRegistry;
+
+    public BulkheadGatewayFilterFactory(BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("name");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String name = config.getName() != null ? config.getName() : config.getRouteId();
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(name);
+        Counter rejected = meterRegistry.counter("gateway.bulkhead.rejected", "name", name);
+
+        return (exchange, chain) -> {
+            if (!bulkhead.tryAcquirePermission()) {
+                rejected.increment();
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                return response.setComplete();
+            }
+            return chain.filter(exchange).doFinally(signal -> bulkhead.onComplete());
+        };
+    }
+
+    public static class Config implements HasRouteId {
+        private String name;
+        private String routeId;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
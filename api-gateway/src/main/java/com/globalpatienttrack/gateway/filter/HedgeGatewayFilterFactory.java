@@ -0,0 +1,285 @@
+package com.globalpatienttrack.gateway.filter;
+
+import com.globalpatienttrack.gateway.metrics.RouteLatencyHistograms;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hedged GETs: when the first attempt has not answered within the route's recent latency
+ * percentile, a second attempt goes to a different instance and whichever answers first
+ * is used; the other one is cancelled. Opt-in per route, e.g. {@code Hedge=95}, and only
+ * for idempotent GETs.
+ *
+ * Hedges draw from a retry budget: every request earns budgetPercent/100 of a hedge, up to
+ * maxBurst, so hedging adds at most about budgetPercent extra load even when a whole
+ * backend is slow. The filter calls the backend itself (instances from discovery, gateway
+ * HttpClient and header filters) and buffers the body, so it must be the last filter of a
+ * route whose path is forwarded unchanged.
+ */
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+
+    private final DiscoveryClient discoveryClient;
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFilters;
+    private final MeterRegistry meterRegistry;
+    private final WebClient webClient;
+
+    public HedgeGatewayFilterFactory(DiscoveryClient discoveryClient, HttpClient httpClient,
+                                     ObjectProvider<List<HttpHeadersFilter>> headersFilters, MeterRegistry meterRegistry,
+                                     @Value("${gateway.hedging.max-body-bytes:2097152}") int maxBodyBytes) {
+        super(Config.class);
+        this.discoveryClient = discoveryClient;
+        this.headersFilters = headersFilters;
+        this.meterRegistry = meterRegistry;
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxBodyBytes))
+                .build();
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("percentile");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        LatencyWindow latencies = new LatencyWindow(config.getWindowSize());
+        HedgeBudget budget = new HedgeBudget(config.getBudgetPercent() / 100.0, config.getMaxBurst());
+        AtomicInteger nextInstance = new AtomicInteger();
+        Counter hedged = meterRegistry.counter("gateway.hedge.requests", "route", config.getRouteId(), "outcome", "hedged");
+        Counter skipped = meterRegistry.counter("gateway.hedge.requests", "route", config.getRouteId(), "outcome", "budget_exhausted");
+        Counter hedgeWins = meterRegistry.counter("gateway.hedge.wins", "route", config.getRouteId());
+
+        return (exchange, chain) -> {
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            if (exchange.getRequest().getMethod() != HttpMethod.GET || route == null) {
+                return chain.filter(exchange);
+            }
+            List<ServiceInstance> instances = discoveryClient.getInstances(route.getUri().getHost());
+            if (instances.isEmpty()) {
+                return chain.filter(exchange);
+            }
+            budget.deposit();
+
+            int first = Math.floorMod(nextInstance.getAndIncrement(), instances.size());
+            Mono<ResponseEntity<byte[]>> primary = attempt(exchange, instances.get(first), latencies);
+
+            Mono<ResponseEntity<byte[]>> hedge = Mono.empty();
+            if (instances.size() > 1) {
+                ServiceInstance other = instances.get((first + 1) % instances.size());
+                long delayMillis = Math.max(config.getMinDelayMs(),
+                        latencies.percentile(config.getPercentile(), config.getInitialDelayMs()));
+                hedge = Mono.delay(Duration.ofMillis(delayMillis))
+                        .flatMap(tick -> {
+                            if (!budget.tryWithdraw()) {
+                                skipped.increment();
+                                return Mono.empty();
+                            }
+                            hedged.increment();
+                            return attempt(exchange, other, latencies).doOnNext(response -> hedgeWins.increment());
+                        });
+            }
+
+            long start = System.nanoTime();
+            return Mono.firstWithValue(primary, hedge)
+                    .doOnNext(response -> exchange.getAttributes()
+                            .put(RouteLatencyHistograms.UPSTREAM_NANOS_ATTRIBUTE, System.nanoTime() - start))
+                    .flatMap(response -> write(exchange, response));
+        };
+    }
+
+    private Mono<ResponseEntity<byte[]>> attempt(ServerWebExchange exchange, ServiceInstance instance,
+                                                 LatencyWindow latencies) {
+        ServerHttpRequest request = exchange.getRequest();
+        URI uri = URI.create(instance.getUri() + request.getPath().value()
+                + (request.getURI().getRawQuery() != null ? "?" + request.getURI().getRawQuery() : ""));
+        // Same header handling as the regular routing filter
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(HttpHeadersFilter.filterRequest(headersFilters.getIfAvailable(), exchange));
+        headers.remove(HttpHeaders.HOST);
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return webClient.get()
+                    .uri(uri)
+                    .headers(target -> target.addAll(headers))
+                    .exchangeToMono(response -> response.toEntity(byte[].class))
+                    .doOnNext(response -> latencies.record(System.nanoTime() - start));
+        });
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, ResponseEntity<byte[]> upstream) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(upstream.getStatusCode());
+        HttpHeaders headers = HttpHeadersFilter.filter(headersFilters.getIfAvailable(), upstream.getHeaders(),
+                exchange, HttpHeadersFilter.Type.RESPONSE);
+        response.getHeaders().putAll(headers);
+        response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+
+        byte[] body = upstream.getBody() != null ? upstream.getBody() : new byte[0];
+        response.getHeaders().setContentLength(body.length);
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    /**
+     * The most recent response times of a route; percentiles are recomputed at most once a second.
+     */
+    static final class LatencyWindow {
+        private static final long RECOMPUTE_NANOS = Duration.ofSeconds(1).toNanos();
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int next;
+        private int count;
+        private long[] sorted = new long[0];
+        private long sortedAtNanos;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized long percentile(double percentile, long fallbackMillis) {
+            if (count < MIN_SAMPLES) {
+                return fallbackMillis;
+            }
+            long now = System.nanoTime();
+            if (sorted.length != count || now - sortedAtNanos > RECOMPUTE_NANOS) {
+                sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                sortedAtNanos = now;
+            }
+            int index = (int) Math.min(count - 1, Math.ceil(percentile / 100.0 * count) - 1);
+            return Duration.ofNanos(sorted[Math.max(0, index)]).toMillis();
+        }
+    }
+
+    /**
+     * Retry budget: every request deposits a fraction of a hedge, every hedge withdraws one.
+     */
+    static final class HedgeBudget {
+        private final double depositPerRequest;
+        private final double maxBalance;
+        private double balance;
+
+        HedgeBudget(double depositPerRequest, double maxBalance) {
+            this.depositPerRequest = depositPerRequest;
+            this.maxBalance = maxBalance;
+            this.balance = maxBalance;
+        }
+
+        synchronized void deposit() {
+            balance = Math.min(maxBalance, balance + depositPerRequest);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (balance >= 1) {
+                balance -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private double percentile = 95;
+        private long minDelayMs = 20;
+        private long initialDelayMs = 500;  // until the window has enough samples
+        private int windowSize = 1000;
+        private double budgetPercent = 10;
+        private double maxBurst = 10;
+        private String routeId;
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public long getMinDelayMs() {
+            return minDelayMs;
+        }
+
+        public void setMinDelayMs(long minDelayMs) {
+            this.minDelayMs = minDelayMs;
+        }
+
+        public long getInitialDelayMs() {
+            return initialDelayMs;
+        }
+
+        public void setInitialDelayMs(long initialDelayMs) {
+            this.initialDelayMs = initialDelayMs;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public double getBudgetPercent() {
+            return budgetPercent;
+        }
+
+        public void setBudgetPercent(double budgetPercent) {
+            this.budgetPercent = budgetPercent;
+        }
+
+        public double getMaxBurst() {
+            return maxBurst;
+        }
+
+        public void setMaxBurst(double maxBurst) {
+            this.maxBurst = maxBurst;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
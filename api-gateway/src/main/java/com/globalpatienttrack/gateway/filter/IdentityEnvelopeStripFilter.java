@@ -0,0 +1,32 @@
+package com.globalpatienttrack.gateway.filter;
+
+import com.globalpatienttrack.shared.security.IdentityEnvelope;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Removes identity envelopes sent by clients on every route, before any other filter runs.
+ * Only the Authentication filter may attach one, after it has validated the token.
+ */
+@Component
+public class IdentityEnvelopeStripFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!exchange.getRequest().getHeaders().containsKey(IdentityEnvelope.HEADER)) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange.mutate()
+                .request(request -> request.headers(headers -> headers.remove(IdentityEnvelope.HEADER)))
+                .build());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,99 @@
+package com.globalpatienttrack.gateway.filter;
+
+import com.globalpatienttrack.shared.ratelimit.TokenBucket;
+import com.globalpatienttrack.shared.security.TokenClaims;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token-bucket limit per organization on one route, so a single tenant cannot saturate a
+ * backend for everyone else. Configured per route, e.g. {@code OrganizationRateLimit=100,600}
+ * for a burst of 100 requests refilled at 600 per minute.
+ *
+ * Buckets are kept in memory on each gateway instance, so the effective limit scales with
+ * the number of instances. The organization comes from the claims the Authentication
+ * filter validated; requests without one (anonymous or public paths) are not limited here.
+ */
+@Component
+public class OrganizationRateLimitGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<OrganizationRateLimitGatewayFilterFactory.Config> {
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private final MeterRegistry meterRegistry;
+
+    public OrganizationRateLimitGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("burst", "perMinute");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // One map per configured route: organizations are few, so buckets are simply kept
+        Map<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+        double refillPerSecond = config.getPerMinute() / 60.0;
+
+        return (exchange, chain) -> {
+            TokenClaims claims = exchange.getAttribute(AuthenticationGatewayFilterFactory.CLAIMS_ATTRIBUTE);
+            if (claims == null || claims.getOrganizationId() == null) {
+                return chain.filter(exchange);
+            }
+
+            TokenBucket bucket = buckets.computeIfAbsent(claims.getOrganizationId(),
+                    organizationId -> new TokenBucket(config.getBurst(), refillPerSecond));
+            boolean allowed = bucket.tryConsume();
+
+            ServerHttpResponse response = exchange.getResponse();
+            response.getHeaders().set(LIMIT_HEADER, String.valueOf(config.getBurst()));
+            response.getHeaders().set(REMAINING_HEADER, String.valueOf(bucket.getAvailablePermits()));
+            if (allowed) {
+                return chain.filter(exchange);
+            }
+
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            meterRegistry.counter("gateway.ratelimit.rejected", "route", route != null ? route.getId() : "unknown")
+                    .increment();
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(bucket.getSecondsUntilNextPermit()));
+            return response.setComplete();
+        };
+    }
+
+    public static class Config {
+        private long burst = 100;
+        private long perMinute = 600;
+
+        public long getBurst() {
+            return burst;
+        }
+
+        public void setBurst(long burst) {
+            this.burst = burst;
+        }
+
+        public long getPerMinute() {
+            return perMinute;
+        }
+
+        public void setPerMinute(long perMinute) {
+            this.perMinute = perMinute;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.globalpatienttrack.gateway.filter;
+
+import com.globalpatienttrack.gateway.cache.CachedResponse;
+import com.globalpatienttrack.gateway.cache.GatewayResponseCache;
+import com.globalpatienttrack.shared.security.TokenClaims;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Serves GETs of nearly static endpoints from the {@link GatewayResponseCache}. Only routes
+ * that list this filter are cached, e.g. {@code ResponseCache=300} for five minutes.
+ *
+ * Entries are keyed by path, query, organization and role, so tenants and roles never see
+ * each other's responses. Every response carries an ETag (MD5 of the body, as Spring's
+ * ShallowEtagHeaderFilter computes it) and "Cache-Control: private, no-cache", so clients
+ * revalidate with If-None-Match and get 304 Not Modified while the data is unchanged.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private final GatewayResponseCache responseCache;
+
+    public ResponseCacheGatewayFilterFactory(GatewayResponseCache responseCache) {
+        super(Config.class);
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("ttlSeconds");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        long ttlMillis = config.getTtlSeconds() * 1000;
+
+        return (exchange, chain) -> {
+            if (exchange.getRequest().getMethod() != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+
+            String key = cacheKey(exchange);
+            CachedResponse cached = responseCache.get(key);
+            if (cached != null) {
+                return writeCached(exchange, cached);
+            }
+
+            ServerHttpResponse response = exchange.getResponse();
+            ServerHttpResponseDecorator caching = new ServerHttpResponseDecorator(response) {
+                @Override
+                public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                    if (!HttpStatus.OK.equals(getStatusCode()) || getHeaders().containsKey(HttpHeaders.SET_COOKIE)) {
+                        return super.writeWith(body);
+                    }
+                    return DataBufferUtils.join(body).flatMap(buffer -> {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        DataBufferUtils.release(buffer);
+
+                        CachedResponse fresh = new CachedResponse(bytes, getHeaders().getContentType(),
+                                eTagOf(bytes), System.currentTimeMillis() + ttlMillis);
+                        responseCache.put(key, fresh);
+
+                        setCacheHeaders(getHeaders(), fresh);
+                        if (isNotModified(exchange.getRequest(), fresh)) {
+                            return notModified(this);
+                        }
+                        getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+                        getHeaders().setContentLength(bytes.length);
+                        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                    });
+                }
+            };
+            return chain.filter(exchange.mutate().response(caching).build());
+        };
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.OK);
+        setCacheHeaders(response.getHeaders(), cached);
+        if (isNotModified(exchange.getRequest(), cached)) {
+            return notModified(response);
+        }
+        if (cached.getContentType() != null) {
+            response.getHeaders().setContentType(cached.getContentType());
+        }
+        response.getHeaders().setContentLength(cached.getBody().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.getBody())));
+    }
+
+    private Mono<Void> notModified(ServerHttpResponse response) {
+        responseCache.recordNotModified();
+        response.setStatusCode(HttpStatus.NOT_MODIFIED);
+        response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        return response.setComplete();
+    }
+
+    private static void setCacheHeaders(HttpHeaders headers, CachedResponse cached) {
+        headers.setETag(cached.getETag());
+        headers.setCacheControl(CACHE_CONTROL);
+        headers.remove(HttpHeaders.PRAGMA);
+        headers.remove(HttpHeaders.EXPIRES);
+    }
+
+    private static boolean isNotModified(ServerHttpRequest request, CachedResponse cached) {
+        for (String eTag : request.getHeaders().getIfNoneMatch()) {
+            // Weak comparison, as for GET conditional requests
+            String candidate = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+            if (candidate.equals("*") || candidate.equals(cached.getETag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String cacheKey(ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        TokenClaims claims = exchange.getAttribute(AuthenticationGatewayFilterFactory.CLAIMS_ATTRIBUTE);
+        String query = request.getURI().getRawQuery();
+        return request.getPath().value()
+                + (query != null ? "?" + query : "")
+                + "|" + (claims != null ? claims.getOrganizationId() : "-")
+                + "|" + (claims != null ? claims.getRole() : "-");
+    }
+
+    private static String eTagOf(byte[] body) {
+        return "\"0" + DigestUtils.md5DigestAsHex(body) + "\"";
+    }
+
+    public static class Config {
+        private long ttlSeconds = 60;
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.globalpatienttrack.gateway.filter;
+
+import com.globalpatienttrack.gateway.metrics.RouteLatencyHistograms;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Times every routed exchange from the first filter until the response is written, and
+ * splits it into upstream, gateway and auth time from what the other filters recorded.
+ */
+@Component
+public class RouteLatencyFilter implements GlobalFilter, Ordered {
+
+    private final RouteLatencyHistograms histograms;
+
+    public RouteLatencyFilter(RouteLatencyHistograms histograms) {
+        this.histograms = histograms;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+        long start = System.nanoTime();
+        AtomicInteger inFlight = histograms.inFlight(route.getId());
+        inFlight.incrementAndGet();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    inFlight.decrementAndGet();
+                    record(exchange, route.getId(), signal, System.nanoTime() - start);
+                });
+    }
+
+    private void record(ServerWebExchange exchange, String routeId, SignalType signal, long totalNanos) {
+        String statusClass = statusClass(exchange.getResponse().getStatusCode(), signal);
+        Long upstreamNanos = exchange.getAttribute(RouteLatencyHistograms.UPSTREAM_NANOS_ATTRIBUTE);
+        Long authNanos = exchange.getAttribute(RouteLatencyHistograms.AUTH_NANOS_ATTRIBUTE);
+
+        histograms.record(routeId, statusClass, RouteLatencyHistograms.TOTAL, totalNanos);
+        if (upstreamNanos != null) {
+            histograms.record(routeId, statusClass, RouteLatencyHistograms.UPSTREAM, upstreamNanos);
+        }
+        // Without an upstream call (rejected, cached, fallback) the whole exchange is gateway time
+        histograms.record(routeId, statusClass, RouteLatencyHistograms.GATEWAY,
+                totalNanos - (upstreamNanos != null ? upstreamNanos : 0));
+        if (authNanos != null) {
+            histograms.record(routeId, statusClass, RouteLatencyHistograms.AUTH, authNanos);
+        }
+    }
+
+    private static String statusClass(HttpStatusCode status, SignalType signal) {
+        if (signal == SignalType.CANCEL) {
+            return "cancelled";
+        }
+        if (status == null) {
+            // Errors get their status from the error handler later on
+            return signal == SignalType.ON_ERROR ? "5xx" : "unknown";
+        }
+        return status.value() / 100 + "xx";
+    }
+
+    @Override
+    public int getOrder() {
+        // Right after IdentityEnvelopeStripFilter, so nearly all gateway work is included
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+}
@@ -0,0 +1,31 @@
+package com.globalpatienttrack.gateway.filter;
+
+import com.globalpatienttrack.gateway.metrics.RouteLatencyHistograms;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Wraps the routing filter, which completes once the backend's response headers arrived;
+ * the response body is streamed afterwards and counts as gateway time.
+ */
+@Component
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doOnTerminate(() -> exchange.getAttributes()
+                        .put(RouteLatencyHistograms.UPSTREAM_NANOS_ATTRIBUTE, System.nanoTime() - start));
+    }
+
+    @Override
+    public int getOrder() {
+        // Just before the routing filters (Ordered.LOWEST_PRECEDENCE)
+        return Ordered.LOWEST_PRECEDENCE - 10;
+    }
+}
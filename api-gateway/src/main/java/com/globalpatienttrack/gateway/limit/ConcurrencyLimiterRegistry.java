@@ -0,0 +1,77 @@
+package com.globalpatienttrack.gateway.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link GradientConcurrencyLimiter} per backend, shared by its routes and the dashboard
+ * aggregation. Current limits are published as gateway.concurrency.limit and
+ * gateway.concurrency.inflight, shed requests as gateway.concurrency.rejected.
+ */
+@Component
+public class ConcurrencyLimiterRegistry {
+
+    private final MeterRegistry meterRegistry;
+    private final GradientConcurrencyLimiter.Settings settings;
+    private final Map<String, GradientConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimiterRegistry(MeterRegistry meterRegistry,
+                                      @Value("${gateway.concurrency-limit.initial-limit:20}") int initialLimit,
+                                      @Value("${gateway.concurrency-limit.min-limit:5}") int minLimit,
+                                      @Value("${gateway.concurrency-limit.max-limit:200}") int maxLimit,
+                                      @Value("${gateway.concurrency-limit.tolerance:1.5}") double tolerance,
+                                      @Value("${gateway.concurrency-limit.smoothing:0.2}") double smoothing,
+                                      @Value("${gateway.concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${gateway.concurrency-limit.long-window:600}") int longWindow,
+                                      @Value("${gateway.concurrency-limit.window-ms:1000}") long windowMillis,
+                                      @Value("${gateway.concurrency-limit.min-window-samples:10}") int minWindowSamples) {
+        this.meterRegistry = meterRegistry;
+        this.settings = new GradientConcurrencyLimiter.Settings(initialLimit, minLimit, maxLimit, tolerance,
+                smoothing, backoffRatio, longWindow, Duration.ofMillis(windowMillis).toNanos(), minWindowSamples);
+    }
+
+    public GradientConcurrencyLimiter limiter(String name) {
+        return limiters.computeIfAbsent(name, key -> {
+            GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(settings);
+            Gauge.builder("gateway.concurrency.limit", limiter, GradientConcurrencyLimiter::getLimit)
+                    .tag("name", key)
+                    .register(meterRegistry);
+            Gauge.builder("gateway.concurrency.inflight", limiter, GradientConcurrencyLimiter::getInFlight)
+                    .tag("name", key)
+                    .register(meterRegistry);
+            return limiter;
+        });
+    }
+
+    /**
+     * Counts a request shed because the backend was at its limit.
+     */
+    public void rejected(String name) {
+        rejected.computeIfAbsent(name, key -> meterRegistry.counter("gateway.concurrency.rejected", "name", key))
+                .increment();
+    }
+
+    /**
+     * name -> {limit, inFlight}.
+     */
+    public Map<String, Object> summary() {
+        Map<String, Object> result = new TreeMap<>();
+        limiters.forEach((name, limiter) -> {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("limit", limiter.getLimit());
+            state.put("inFlight", limiter.getInFlight());
+            result.put(name, state);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+package com.globalpatienttrack.gateway.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit for one backend, learned from its latency (gradient algorithm). The
+ * baseline is the backend's unloaded latency: the fastest responses seen, following them
+ * down at once and up only slowly. While a window's average stays within tolerance of the
+ * baseline the limit grows by about sqrt(limit); when it climbs - requests queueing in the
+ * backend's thread and connection pools - the limit shrinks in proportion. Timeouts cut it
+ * by the backoff ratio.
+ *
+ * Samples are aggregated per window (windowMs and at least minWindowSamples), so the limit
+ * changes at most once per window. Windows that never used half the limit do not change it.
+ */
+public final class GradientConcurrencyLimiter {
+
+    /**
+     * How a request ended, as far as the limit is concerned.
+     */
+    public enum Outcome {
+        SUCCESS,
+        DROPPED,  // timed out - the backend is overloaded
+        IGNORED   // says nothing about the backend's latency (cancelled, short-circuited)
+    }
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Settings settings;
+    private final double baselineFactor;
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double baselineRttNanos;
+    private long windowStartNanos = System.nanoTime();
+    private int windowSamples;
+    private long windowRttNanos;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    GradientConcurrencyLimiter(Settings settings) {
+        this.settings = settings;
+        this.baselineFactor = 2.0 / (settings.longWindow + 1);
+        this.estimatedLimit = settings.initialLimit;
+        this.limit = settings.initialLimit;
+    }
+
+    /**
+     * Takes a slot if fewer than limit requests are in flight; never waits.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot taken by {@link #tryAcquire()} and feeds the request into the limit.
+     */
+    public void release(long startNanos, Outcome outcome) {
+        int concurrent = inFlight.getAndDecrement();
+        if (outcome != Outcome.IGNORED) {
+            sample(System.nanoTime() - startNanos, concurrent, outcome == Outcome.DROPPED);
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void sample(long rttNanos, int concurrent, boolean dropped) {
+        windowSamples++;
+        windowRttNanos += rttNanos;
+        windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+        windowMaxInFlight = Math.max(windowMaxInFlight, concurrent);
+        windowDropped |= dropped;
+
+        long now = System.nanoTime();
+        if (windowSamples < settings.minWindowSamples || now - windowStartNanos < settings.windowNanos) {
+            return;
+        }
+        update((double) windowRttNanos / windowSamples, windowMinRttNanos, windowMaxInFlight, windowDropped);
+
+        windowStartNanos = now;
+        windowSamples = 0;
+        windowRttNanos = 0;
+        windowMinRttNanos = Long.MAX_VALUE;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    private void update(double averageRttNanos, long minRttNanos, int maxInFlight, boolean dropped) {
+        if (dropped) {
+            estimatedLimit = Math.max(settings.minLimit, estimatedLimit * settings.backoffRatio);
+            limit = (int) estimatedLimit;
+            return;
+        }
+
+        // Slowly up, so a backend that got slower for good (more data, new deploy) is not starved
+        baselineRttNanos = baselineRttNanos == 0 || minRttNanos < baselineRttNanos ? minRttNanos
+                : baselineRttNanos + baselineFactor * (minRttNanos - baselineRttNanos);
+        // Too little traffic to tell whether the limit could be higher
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, settings.tolerance * baselineRttNanos / averageRttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - settings.smoothing) + newLimit * settings.smoothing;
+        estimatedLimit = Math.max(settings.minLimit, Math.min(settings.maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Tuning shared by all limiters, from gateway.concurrency-limit.*.
+     */
+    static final class Settings {
+        private final int initialLimit;
+        private final int minLimit;
+        private final int maxLimit;
+        private final double tolerance;
+        private final double smoothing;
+        private final double backoffRatio;
+        private final int longWindow;
+        private final long windowNanos;
+        private final int minWindowSamples;
+
+        Settings(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                 double backoffRatio, int longWindow, long windowNanos, int minWindowSamples) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.tolerance = tolerance;
+            this.smoothing = smoothing;
+            this.backoffRatio = backoffRatio;
+            this.longWindow = longWindow;
+            this.windowNanos = windowNanos;
+            this.minWindowSamples = minWindowSamples;
+        }
+    }
+}
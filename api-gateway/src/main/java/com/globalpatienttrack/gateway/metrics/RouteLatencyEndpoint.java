@@ -0,0 +1,80 @@
+package com.globalpatienttrack.gateway.metrics;
+
+import com.globalpatienttrack.gateway.limit.ConcurrencyLimiterRegistry;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * /actuator/routelatency: HDR latency percentiles per route, status class and phase, plus
+ * saturation - requests in flight per route, adaptive concurrency limits, bulkhead permits and
+ * circuit breaker states.
+ * /actuator/routelatency/{routeId} shows one route. Read-only, since /actuator/** is not
+ * authenticated at the gateway.
+ */
+@Component
+@Endpoint(id = "routelatency")
+public class RouteLatencyEndpoint {
+
+    private final RouteLatencyHistograms histograms;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final ConcurrencyLimiterRegistry limiterRegistry;
+
+    public RouteLatencyEndpoint(RouteLatencyHistograms histograms, BulkheadRegistry bulkheadRegistry,
+                                CircuitBreakerRegistry circuitBreakerRegistry,
+                                ConcurrencyLimiterRegistry limiterRegistry) {
+        this.histograms = histograms;
+        this.limiterRegistry = limiterRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> routes() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("routes", histograms.summary());
+        result.put("concurrencyLimits", limiterRegistry.summary());
+        result.put("bulkheads", bulkheads());
+        result.put("circuitBreakers", circuitBreakers());
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> route(@Selector String routeId) {
+        return histograms.summary(routeId);
+    }
+
+    private Map<String, Object> bulkheads() {
+        Map<String, Object> result = new TreeMap<>();
+        for (Bulkhead bulkhead : bulkheadRegistry.getAllBulkheads()) {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("maxConcurrentCalls", bulkhead.getBulkheadConfig().getMaxConcurrentCalls());
+            state.put("availableConcurrentCalls", bulkhead.getMetrics().getAvailableConcurrentCalls());
+            result.put(bulkhead.getName(), state);
+        }
+        return result;
+    }
+
+    private Map<String, Object> circuitBreakers() {
+        Map<String, Object> result = new TreeMap<>();
+        for (CircuitBreaker circuitBreaker : circuitBreakerRegistry.getAllCircuitBreakers()) {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("state", circuitBreaker.getState().name());
+            state.put("failureRate", circuitBreaker.getMetrics().getFailureRate());
+            state.put("slowCallRate", circuitBreaker.getMetrics().getSlowCallRate());
+            state.put("notPermittedCalls", circuitBreaker.getMetrics().getNumberOfNotPermittedCalls());
+            result.put(circuitBreaker.getName(), state);
+        }
+        return result;
+    }
+}
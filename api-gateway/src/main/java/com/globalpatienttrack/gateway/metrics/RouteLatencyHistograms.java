@@ -0,0 +1,133 @@
+package com.globalpatienttrack.gateway.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency per route, status class (2xx, 4xx, ...) and phase, both as HDR histograms since
+ * startup for the routelatency actuator endpoint, and as Micrometer timers
+ * (gateway.route.latency, with percentiles) for dashboards and SLOs.
+ *
+ * Phases: total (whole exchange), upstream (until the backend's response headers), gateway
+ * (total minus upstream) and auth (the Authentication filter, when it ran).
+ */
+@Component
+public class RouteLatencyHistograms {
+
+    public static final String UPSTREAM_NANOS_ATTRIBUTE = RouteLatencyHistograms.class.getName() + ".upstreamNanos";
+    public static final String AUTH_NANOS_ATTRIBUTE = RouteLatencyHistograms.class.getName() + ".authNanos";
+
+    public static final String TOTAL = "total";
+    public static final String UPSTREAM = "upstream";
+    public static final String GATEWAY = "gateway";
+    public static final String AUTH = "auth";
+
+    // Microsecond resolution, up to one minute, 3 significant digits
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Map<String, Map<String, Series>>> routes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public RouteLatencyHistograms(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(String routeId, String statusClass, String phase, long nanos) {
+        routes.computeIfAbsent(routeId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(statusClass, status -> new ConcurrentHashMap<>())
+                .computeIfAbsent(phase, key -> new Series(routeId, statusClass, key))
+                .record(nanos);
+    }
+
+    /**
+     * Requests of the route currently in flight; callers must decrement when the exchange ends.
+     */
+    public AtomicInteger inFlight(String routeId) {
+        return inFlight.computeIfAbsent(routeId, id -> {
+            AtomicInteger counter = new AtomicInteger();
+            Gauge.builder("gateway.route.inflight", counter, AtomicInteger::get)
+                    .tag("route", id)
+                    .register(meterRegistry);
+            return counter;
+        });
+    }
+
+    /**
+     * route -> {inFlight, latency: statusClass -> phase -> summary in milliseconds}.
+     */
+    public Map<String, Object> summary() {
+        Map<String, Object> result = new TreeMap<>();
+        routes.keySet().forEach(routeId -> result.put(routeId, summary(routeId)));
+        inFlight.keySet().forEach(routeId -> result.computeIfAbsent(routeId, this::summary));
+        return result;
+    }
+
+    public Map<String, Object> summary(String routeId) {
+        Map<String, Object> latency = new TreeMap<>();
+        routes.getOrDefault(routeId, Map.of()).forEach((statusClass, phases) -> {
+            Map<String, Object> byPhase = new TreeMap<>();
+            phases.forEach((phase, series) -> byPhase.put(phase, series.summary()));
+            latency.put(statusClass, byPhase);
+        });
+        Map<String, Object> route = new LinkedHashMap<>();
+        AtomicInteger current = inFlight.get(routeId);
+        route.put("inFlight", current != null ? current.get() : 0);
+        route.put("latency", latency);
+        return route;
+    }
+
+    private final class Series {
+        private final Recorder recorder = new Recorder(MAX_MICROS, SIGNIFICANT_DIGITS);
+        private final Histogram accumulated = new Histogram(MAX_MICROS, SIGNIFICANT_DIGITS);
+        private final Timer timer;
+        private Histogram interval;
+
+        private Series(String routeId, String statusClass, String phase) {
+            this.timer = Timer.builder("gateway.route.latency")
+                    .tag("route", routeId)
+                    .tag("status", statusClass)
+                    .tag("phase", phase)
+                    .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        private void record(long nanos) {
+            recorder.recordValue(Math.max(0, Math.min(MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos))));
+            timer.record(Duration.ofNanos(nanos));
+        }
+
+        private synchronized Map<String, Object> summary() {
+            interval = recorder.getIntervalHistogram(interval);
+            accumulated.add(interval);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", accumulated.getTotalCount());
+            summary.put("meanMs", millis(accumulated.getMean()));
+            summary.put("p50Ms", millis(accumulated.getValueAtPercentile(50)));
+            summary.put("p90Ms", millis(accumulated.getValueAtPercentile(90)));
+            summary.put("p99Ms", millis(accumulated.getValueAtPercentile(99)));
+            summary.put("p999Ms", millis(accumulated.getValueAtPercentile(99.9)));
+            summary.put("maxMs", millis(accumulated.getMaxValue()));
+            return summary;
+        }
+
+        private double millis(double micros) {
+            return Math.round(micros) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.globalpatienttrack.gateway.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Follows the revocation feed (/auth/revocations/stream) of every auth-service instance
+ * and evicts revoked tokens from the {@link TokenIntrospectionCache} and records them in
+ * {@link RevokedTokens} for signed tokens. The feed is
+ * node-local, so one subscription is kept per instance; instances are re-discovered
+ * periodically. A new subscription is replayed the revocations the instance still buffers;
+ * reconnects resume from the last event id. A "reset" event (or a feed we cannot resume)
+ * clears the whole cache and marks the revoked set incomplete, since revocations may have
+ * been missed.
+ */
+@Component
+public class RevocationFeedSubscriber {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationFeedSubscriber.class);
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> EVENT_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final TokenIntrospectionCache introspectionCache;
+    private final RevokedTokens revokedTokens;
+    private final DiscoveryClient discoveryClient;
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private Disposable discovery;
+    private volatile boolean initialDiscoveryDone;
+    // Subscriptions from the first discovery whose replay has not finished yet
+    private final AtomicInteger pendingInitialReplays = new AtomicInteger();
+
+    @Value("${gateway.revocation-feed.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.revocation-feed.auth-service-id:auth-service}")
+    private String authServiceId;
+
+    @Value("${gateway.revocation-feed.discovery-interval-ms:30000}")
+    private long discoveryIntervalMillis;
+
+    public RevocationFeedSubscriber(TokenIntrospectionCache introspectionCache, RevokedTokens revokedTokens,
+                                    DiscoveryClient discoveryClient, WebClient.Builder webClientBuilder,
+                                    ObjectMapper objectMapper) {
+        this.introspectionCache = introspectionCache;
+        this.revokedTokens = revokedTokens;
+        this.discoveryClient = discoveryClient;
+        // Not load-balanced: every auth-service instance is followed individually
+        this.webClient = webClientBuilder.build();
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        discovery = Flux.interval(Duration.ZERO, Duration.ofMillis(discoveryIntervalMillis))
+                .subscribe(tick -> reconcile());
+    }
+
+    private void reconcile() {
+        try {
+            followInstances();
+        } catch (RuntimeException e) {
+            // Keep the periodic discovery alive; existing subscriptions are unaffected
+            logger.warn("Could not discover {} instances: {}", authServiceId, e.getMessage());
+        }
+    }
+
+    private void followInstances() {
+        Map<String, ServiceInstance> instances = discoveryClient.getInstances(authServiceId).stream()
+                .collect(Collectors.toMap(instance -> instance.getUri().toString(), instance -> instance, (a, b) -> a));
+
+        Set<String> gone = subscriptions.keySet().stream()
+                .filter(uri -> !instances.containsKey(uri))
+                .collect(Collectors.toSet());
+        gone.forEach(uri -> subscriptions.remove(uri).dispose());
+
+        boolean initial = !initialDiscoveryDone;
+        if (initial) {
+            pendingInitialReplays.set(instances.size());
+            if (instances.isEmpty()) {
+                revokedTokens.markStarted();
+            }
+        }
+        instances.keySet().forEach(uri -> subscriptions.computeIfAbsent(uri, key -> new Subscription(key, initial)));
+        initialDiscoveryDone = true;
+    }
+
+    @PreDestroy
+    void stop() {
+        if (discovery != null) {
+            discovery.dispose();
+        }
+        subscriptions.values().forEach(Subscription::dispose);
+    }
+
+    private final class Subscription {
+        private final String baseUri;
+        // Found by the first discovery - the revoked set is incomplete until its replay is done
+        private volatile boolean awaitingReplay;
+        // Sequence of the last replayed event; the replay is done once it has been handled
+        private volatile long replayUntil = -1;
+        private volatile String lastEventId;
+        private final Disposable disposable;
+
+        private Subscription(String baseUri, boolean initial) {
+            this.baseUri = baseUri;
+            this.awaitingReplay = initial;
+            this.disposable = Mono.defer(this::connect)
+                    .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                    .subscribe();
+        }
+
+        // One connection: completes when auth-service closes the stream, errors when it fails
+        private Mono<Void> connect() {
+            return webClient.get()
+                    .uri(baseUri + "/auth/revocations/stream")
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .headers(headers -> {
+                        if (lastEventId != null) {
+                            headers.set("Last-Event-ID", lastEventId);
+                        }
+                    })
+                    .retrieve()
+                    .bodyToFlux(EVENT_TYPE)
+                    .doOnNext(this::handle)
+                    .doOnError(error -> logger.debug("Revocation feed {} disconnected: {}", baseUri, error.getMessage()))
+                    .then();
+        }
+
+        private void handle(ServerSentEvent<String> event) {
+            if (event.event() == null) {
+                return; // keepalive comment
+            }
+            switch (event.event()) {
+                case "revoked" -> evict(event.data());
+                case "reset" -> {
+                    logger.info("Revocation feed {} was reset, clearing the introspection cache", baseUri);
+                    missedRevocations();
+                    replayed();
+                }
+                case "ready" -> replayUntil = parseLong(event.data());
+                default -> {
+                    // unknown event types are ignored
+                }
+            }
+            if (event.id() != null) {
+                lastEventId = event.id();
+                if (replayUntil >= 0 && sequenceOf(event.id()) >= replayUntil) {
+                    replayUntil = -1;
+                    replayed();
+                }
+            }
+        }
+
+        private void replayed() {
+            if (awaitingReplay) {
+                awaitingReplay = false;
+                if (pendingInitialReplays.decrementAndGet() == 0) {
+                    revokedTokens.markStarted();
+                }
+            }
+        }
+
+        // Event ids are "epoch:sequence"
+        private long sequenceOf(String eventId) {
+            return parseLong(eventId.substring(eventId.indexOf(':') + 1));
+        }
+
+        private long parseLong(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+
+        private void evict(String data) {
+            try {
+                JsonNode node = objectMapper.readTree(data);
+                String tokenDigest = node.path("tokenDigest").asText();
+                introspectionCache.invalidate(tokenDigest);
+                revokedTokens.revoke(tokenDigest, node.path("expiresAt").asLong());
+            } catch (Exception e) {
+                // Cannot tell which token was revoked - be safe
+                missedRevocations();
+            }
+        }
+
+        private void missedRevocations() {
+            introspectionCache.clear();
+            revokedTokens.markIncomplete();
+        }
+
+        private void dispose() {
+            disposable.dispose();
+            // Gone before its replay - nothing more to wait for from it
+            replayed();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.globalpatienttrack.gateway.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signed access tokens revoked before their expiry, as announced on the auth-service
+ * revocation feed and keyed by the hex SHA-256 of the token. Signed tokens are verified
+ * locally, so without this a logout or deactivation would only take effect once the token
+ * expired. Each entry lives until its token would have expired anyway.
+ *
+ * The set is incomplete until the feed of every auth-service instance found at startup has
+ * been replayed, for good when the feed is disabled, and - when revocations may have been
+ * missed (a feed reset, entries evicted because the set was full) - until every token that
+ * could be affected has expired. Meanwhile signed tokens are checked with auth-service like
+ * opaque ones.
+ */
+@Component
+public class RevokedTokens {
+
+    // digest -> token expiry in epoch seconds
+    private final Cache<String, Long> revoked;
+
+    // Epoch seconds until which the set may be missing revocations
+    private final AtomicLong incompleteUntil = new AtomicLong();
+
+    private final long accessTokenTtlSeconds;
+
+    private final boolean feedEnabled;
+
+    private volatile boolean started;
+
+    public RevokedTokens(@Value("${gateway.revocation-feed.enabled:true}") boolean feedEnabled,
+                         @Value("${gateway.revocation-feed.max-revoked-tokens:100000}") long maxSize,
+                         @Value("${oauth2.access-token.expiration:3600}") long accessTokenTtlSeconds) {
+        this.feedEnabled = feedEnabled;
+        this.accessTokenTtlSeconds = accessTokenTtlSeconds;
+        this.revoked = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Long>() {
+                    @Override
+                    public long expireAfterCreate(String digest, Long expiresAt, long currentTime) {
+                        return untilExpiry(expiresAt).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, Long expiresAt, long currentTime, long currentDuration) {
+                        return untilExpiry(expiresAt).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, Long expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .evictionListener((String digest, Long expiresAt, RemovalCause cause) -> {
+                    // Forgotten before its token expired - that revocation is lost
+                    if (cause.wasEvicted() && expiresAt != null && expiresAt > nowSeconds()) {
+                        incompleteUntil.accumulateAndGet(expiresAt, Math::max);
+                    }
+                })
+                .build();
+    }
+
+    public void revoke(String tokenDigest, long expiresAt) {
+        if (expiresAt > nowSeconds()) {
+            revoked.put(tokenDigest, expiresAt);
+        }
+    }
+
+    public boolean isRevoked(String tokenDigest) {
+        return revoked.getIfPresent(tokenDigest) != null;
+    }
+
+    /**
+     * False while revocations may have been missed; signed tokens must then be checked remotely.
+     */
+    public boolean isComplete() {
+        return feedEnabled && started && nowSeconds() >= incompleteUntil.get();
+    }
+
+    /**
+     * The feeds of all auth-service instances known at startup have been replayed.
+     */
+    public void markStarted() {
+        started = true;
+    }
+
+    /**
+     * Revocations may have been missed: distrust the set until every token issued so far has expired.
+     */
+    public void markIncomplete() {
+        incompleteUntil.accumulateAndGet(nowSeconds() + accessTokenTtlSeconds, Math::max);
+    }
+
+    private static Duration untilExpiry(Long expiresAt) {
+        return Duration.ofSeconds(Math.max(0, expiresAt - nowSeconds()));
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,117 @@
+package com.globalpatienttrack.gateway.security;
+
+import com.globalpatienttrack.shared.cache.ExpiringCache;
+import com.globalpatienttrack.shared.security.TokenDigests;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking cache of successful /auth/validate results, keyed by the hex SHA-256 of
+ * the access token. An entry lives until the token expires (capped by max-ttl-seconds)
+ * or until the auth-service revocation feed reports the token as revoked.
+ *
+ * Concurrent misses for the same token share one in-flight validation, so a dashboard
+ * fanning out twenty requests with a fresh token causes a single call to auth-service.
+ */
+@Component
+public class TokenIntrospectionCache {
+
+    // A validation older than this, or one that raced with the revoke of its token, is never cached
+    private final ExpiringCache<String, Map<String, Object>> entries;
+    private final Map<String, Mono<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+
+    private final long maxTtlMillis;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter revokedEvictions;
+
+    public TokenIntrospectionCache(MeterRegistry meterRegistry,
+                                   @Value("${gateway.introspection-cache.max-size:50000}") int maxSize,
+                                   @Value("${gateway.introspection-cache.max-ttl-seconds:300}") long maxTtlSeconds) {
+        this.entries = new ExpiringCache<>(maxSize, Duration.ofSeconds(30));
+        this.maxTtlMillis = maxTtlSeconds * 1000;
+        this.hits = meterRegistry.counter("gateway.introspection.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("gateway.introspection.cache.requests", "result", "miss");
+        this.coalesced = meterRegistry.counter("gateway.introspection.cache.requests", "result", "coalesced");
+        this.revokedEvictions = meterRegistry.counter("gateway.introspection.cache.evictions", "cause", "revoked");
+        Gauge.builder("gateway.introspection.cache.size", entries, ExpiringCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached claims for the token, or subscribes to validator - shared with any
+     * concurrent caller asking for the same token. Validation errors are not cached.
+     */
+    public Mono<Map<String, Object>> get(String token, Supplier<Mono<Map<String, Object>>> validator) {
+        String digest = TokenDigests.sha256Hex(token);
+        Map<String, Object> cached = entries.get(digest);
+        if (cached != null) {
+            hits.increment();
+            return Mono.just(cached);
+        }
+
+        Mono<Map<String, Object>> running = inFlight.get(digest);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+
+        long stamp = entries.stamp();
+        Mono<Map<String, Object>> validation = Mono.defer(validator)
+                .doOnNext(claims -> put(digest, claims, stamp))
+                .doFinally(signal -> inFlight.remove(digest))
+                .cache();
+        running = inFlight.putIfAbsent(digest, validation);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+        misses.increment();
+        return validation;
+    }
+
+    public void invalidate(String tokenDigest) {
+        if (entries.invalidate(tokenDigest)) {
+            revokedEvictions.increment();
+        }
+    }
+
+    /**
+     * Drops everything - used when revocations may have been missed.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private void put(String digest, Map<String, Object> claims, long stamp) {
+        long now = System.currentTimeMillis();
+        long expiresAtMillis = Math.min(tokenExpiry(claims, now), now + maxTtlMillis);
+        entries.put(digest, claims, expiresAtMillis, stamp);
+    }
+
+    // auth-service reports expiresAt as a local date-time in its own (shared) time zone
+    private long tokenExpiry(Map<String, Object> claims, long now) {
+        Object expiresAt = claims.get("expiresAt");
+        if (expiresAt instanceof String value) {
+            try {
+                return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // fall through to max-ttl
+            }
+        }
+        return now + maxTtlMillis;
+    }
+}
@@ -1,12 +1,13 @@
 package com.globalpatienttrack.auth.config;
 
+import com.globalpatienttrack.shared.security.CalibratedBCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
@@ -36,9 +37,13 @@ public class SecurityConfig {
         return http.build();
     }
 
+    // Pinned cost, the same on every node; 0 = calibrate at startup to the per-hash latency budget
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${password-hashing.bcrypt.cost:10}") int cost,
+                                           @Value("${password-hashing.bcrypt.target-ms:250}") long targetMillis,
+                                           @Value("${password-hashing.bcrypt.min-cost:10}") int minCost,
+                                           @Value("${password-hashing.bcrypt.max-cost:14}") int maxCost) {
+        return CalibratedBCryptPasswordEncoder.create(cost, targetMillis, minCost, maxCost);
     }
 
     @Bean
@@ -0,0 +1,36 @@
+package com.globalpatienttrack.auth.config;
+
+import com.globalpatienttrack.auth.service.PhaseTimer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Collects a per-request phase breakdown for the Server-Timing debug header.
+ * Off by default - enable with oauth2.phase-timing.server-timing-header=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "oauth2.phase-timing.server-timing-header", havingValue = "true")
+public class ServerTimingConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                PhaseTimer.startBreakdown();
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                // Normally already taken by ServerTimingAdvice; never leave it on a pooled thread
+                PhaseTimer.endBreakdown();
+            }
+        }).addPathPatterns("/auth/**");
+    }
+}
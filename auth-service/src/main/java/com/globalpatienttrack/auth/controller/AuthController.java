@@ -3,10 +3,20 @@ package com.globalpatienttrack.auth.controller;
 import com.globalpatienttrack.auth.dto.LoginRequest;
 import com.globalpatienttrack.auth.dto.TokenResponse;
 import com.globalpatienttrack.auth.service.OAuth2Service;
+import com.globalpatienttrack.auth.service.RevocationFeed;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/auth")
@@ -16,6 +26,26 @@ public class AuthController {
     @Autowired
     private OAuth2Service oauth2Service;
 
+    @Autowired
+    private RevocationFeed revocationFeed;
+
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9A-Fa-f:.]+");
+
+    // Addresses or CIDR ranges of the proxies (the gateway) whose X-Forwarded-For is believed
+    @Value("${oauth2.login-throttle.trusted-proxies:}")
+    private String trustedProxies;
+
+    private List<IpAddressMatcher> trustedProxyMatchers;
+
+    @PostConstruct
+    public void init() {
+        trustedProxyMatchers = Arrays.stream(trustedProxies.split(","))
+            .map(String::trim)
+            .filter(proxy -> !proxy.isEmpty())
+            .map(IpAddressMatcher::new)
+            .toList();
+    }
+
     /**
      * OAuth2.0 Password Grant - Standard endpoint
      * POST /auth/token?grant_type=password&username=xxx&password=xxx
@@ -25,13 +55,14 @@ public class AuthController {
             @RequestParam("grant_type") String grantType,
             @RequestParam(value = "username", required = false) String username,
             @RequestParam(value = "password", required = false) String password,
-            @RequestParam(value = "refresh_token", required = false) String refreshToken) {
+            @RequestParam(value = "refresh_token", required = false) String refreshToken,
+            HttpServletRequest httpRequest) {
         
         if ("password".equals(grantType)) {
             if (username == null || password == null) {
                 throw new RuntimeException("Username and password required");
             }
-            return ResponseEntity.ok(oauth2Service.login(username, password));
+            return ResponseEntity.ok(oauth2Service.login(username, password, clientIp(httpRequest)));
             
         } else if ("refresh_token".equals(grantType)) {
             if (refreshToken == null) {
@@ -49,9 +80,10 @@ public class AuthController {
      * POST /auth/login with {"username": "xxx", "password": "xxx"}
      */
     @PostMapping("/login")
-    public ResponseEntity<TokenResponse> login(@RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<TokenResponse> login(@RequestBody LoginRequest loginRequest, HttpServletRequest httpRequest) {
         System.out.println("LOGIN CALLED: username=" + loginRequest.getUsername());
-        return ResponseEntity.ok(oauth2Service.login(loginRequest.getUsername(), loginRequest.getPassword()));
+        return ResponseEntity.ok(oauth2Service.login(loginRequest.getUsername(), loginRequest.getPassword(),
+                clientIp(httpRequest)));
     }
 
     /**
@@ -84,6 +116,31 @@ public class AuthController {
         return ResponseEntity.ok(oauth2Service.validateToken(token));
     }
 
+    /**
+     * Validate many access tokens in one round trip
+     * POST /auth/validate/batch with {"tokens": ["xxx", "yyy"]}
+     * Returns {"xxx": {...claims}} - invalid or expired tokens are left out
+     */
+    @PostMapping("/validate/batch")
+    public ResponseEntity<Map<String, Map<String, Object>>> validateTokens(@RequestBody Map<String, List<String>> request) {
+        List<String> tokens = request.get("tokens");
+        if (tokens == null) {
+            throw new RuntimeException("tokens is required");
+        }
+        return ResponseEntity.ok(oauth2Service.validateTokens(tokens));
+    }
+
+    /**
+     * Stream of revoked access token digests (Server-Sent Events)
+     * GET /auth/revocations/stream - reconnect with Last-Event-ID (or ?lastEventId=) to resume
+     */
+    @GetMapping(path = "/revocations/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter revocations(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        return revocationFeed.subscribe(lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam);
+    }
+
     /**
      * Revoke token (logout)
      * POST /auth/revoke with {"token": "xxx"}
@@ -111,4 +168,32 @@ public class AuthController {
         oauth2Service.revokeToken(token);
         return ResponseEntity.ok(Map.of("message", "Logout successful"));
     }
-}
\ No newline at end of file
+
+    /**
+     * X-Forwarded-For is believed only when the request comes from a trusted proxy: each
+     * trusted proxy appends the address it saw, so walking the header from the right, the
+     * first address that is not a trusted proxy is the client. Anyone else talking to us
+     * directly could write anything into the header, so their own address is used.
+     */
+    private String clientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor == null || forwardedFor.isBlank() || !isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String[] hops = forwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !isTrustedProxy(hop)) {
+                return hop;
+            }
+        }
+        return remoteAddr;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        // Only IP literals are matched - anything else must not trigger a DNS lookup
+        return address != null && IP_LITERAL.matcher(address).matches()
+            && trustedProxyMatchers.stream().anyMatch(matcher -> matcher.matches(address));
+    }
+}
@@ -0,0 +1,97 @@
+package com.globalpatienttrack.auth.controller;
+
+import com.globalpatienttrack.auth.service.CredentialCache;
+import com.globalpatienttrack.auth.service.OAuth2Service;
+import com.globalpatienttrack.shared.security.ServiceCredential;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Service-to-service endpoints. Denied at the api-gateway, and every call must carry a
+ * service credential (X-Service-Credential) signed with internal.service-key - without
+ * the key configured, every call is refused.
+ */
+@RestController
+@RequestMapping("/auth/internal")
+public class InternalAuthController {
+
+
+    @Autowired
+    private CredentialCache credentialCache;
+
+    @Autowired
+    private OAuth2Service oauth2Service;
+
+    @Value("${internal.service-key:}")
+    private String serviceKey;
+
+    @Value("${spring.application.name}")
+    private String serviceName;
+
+    private ServiceCredential serviceCredential;
+
+    @PostConstruct
+    void init() {
+        serviceCredential = ServiceCredential.fromKey(serviceKey, serviceName);
+    }
+
+    /**
+     * Called by user-data-service after a user's credentials changed
+     * POST /auth/internal/credentials/invalidate with {"username": "xxx", "version": 4}
+     */
+    @PostMapping("/credentials/invalidate")
+    public ResponseEntity<Map<String, Object>> invalidateCredentials(
+            @RequestHeader(value = ServiceCredential.HEADER, required = false) String credential,
+            @RequestBody Map<String, Object> request) {
+        if (!isService(credential)) {
+            return forbidden();
+        }
+        Object username = request.get("username");
+        if (!(username instanceof String)) {
+            throw new RuntimeException("username is required");
+        }
+        long version = request.get("version") instanceof Number number ? number.longValue() : Long.MAX_VALUE;
+        credentialCache.invalidate((String) username, version);
+        return ResponseEntity.ok(Map.of("message", "Credentials invalidated"));
+    }
+
+    /**
+     * Revokes every active session of a user (logout everywhere)
+     * POST /auth/internal/sessions/revoke with {"username": "xxx"}
+     */
+    @PostMapping("/sessions/revoke")
+    public ResponseEntity<Map<String, Object>> revokeSessions(
+            @RequestHeader(value = ServiceCredential.HEADER, required = false) String credential,
+            @RequestBody Map<String, String> request) {
+        if (!isService(credential)) {
+            return forbidden();
+        }
+        String username = request.get("username");
+        if (username == null) {
+            throw new RuntimeException("username is required");
+        }
+        int revoked = oauth2Service.revokeAllSessions(username);
+        return ResponseEntity.ok(Map.of("message", "Sessions revoked", "revoked", revoked));
+    }
+
+    private boolean isService(String credential) {
+        return serviceCredential != null && serviceCredential.verify(credential) != null;
+    }
+
+    private static ResponseEntity<Map<String, Object>> forbidden() {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.FORBIDDEN.value());
+        errorResponse.put("error", "Forbidden");
+        errorResponse.put("message", "A service credential is required");
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+    }
+}
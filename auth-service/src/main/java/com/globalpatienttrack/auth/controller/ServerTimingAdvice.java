@@ -0,0 +1,47 @@
+package com.globalpatienttrack.auth.controller;
+
+import com.globalpatienttrack.auth.service.PhaseTimer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Writes the phase breakdown of the request as a Server-Timing header, e.g.
+ * {@code Server-Timing: user-lookup;desc="login";dur=12.41, password;desc="login";dur=81.07}
+ * Runs just before the body is written, which is the last point headers can still be added.
+ */
+@RestControllerAdvice
+@ConditionalOnProperty(name = "oauth2.phase-timing.server-timing-header", havingValue = "true")
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        Map<String, Long> breakdown = PhaseTimer.endBreakdown();
+        if (breakdown != null && !breakdown.isEmpty()) {
+            StringJoiner header = new StringJoiner(", ");
+            breakdown.forEach((key, nanos) -> {
+                int separator = key.indexOf(';');
+                header.add(String.format(Locale.ROOT, "%s;desc=\"%s\";dur=%.2f",
+                        key.substring(separator + 1), key.substring(0, separator), nanos / 1_000_000.0));
+            });
+            response.getHeaders().add("Server-Timing", header.toString());
+        }
+        return body;
+    }
+}
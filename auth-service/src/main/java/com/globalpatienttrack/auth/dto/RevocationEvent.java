@@ -0,0 +1,41 @@
+package com.globalpatienttrack.auth.dto;
+
+public class RevocationEvent {
+    private long sequence;
+    private String tokenDigest; // hex SHA-256 of the revoked access token
+    private long expiresAt; // epoch seconds - consumers can forget the digest after this
+
+    public RevocationEvent() {
+    }
+
+    public RevocationEvent(long sequence, String tokenDigest, long expiresAt) {
+        this.sequence = sequence;
+        this.tokenDigest = tokenDigest;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getTokenDigest() {
+        return tokenDigest;
+    }
+
+    public void setTokenDigest(String tokenDigest) {
+        this.tokenDigest = tokenDigest;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,74 @@
+package com.globalpatienttrack.auth.dto;
+
+import java.util.Map;
+
+/**
+ * What login needs to know about a user, as returned by user-data-service's
+ * /users/internal/auth/{username}. Immutable, so cached instances can be shared.
+ */
+public final class UserCredentials {
+    private final String passwordHash;
+    private final String role;
+    private final boolean active;
+    private final Long userId;
+    private final Long organizationId;
+    private final String organizationName;
+    private final long version;
+
+    public UserCredentials(String passwordHash, String role, boolean active, Long userId,
+                           Long organizationId, String organizationName, long version) {
+        this.passwordHash = passwordHash;
+        this.role = role;
+        this.active = active;
+        this.userId = userId;
+        this.organizationId = organizationId;
+        this.organizationName = organizationName;
+        this.version = version;
+    }
+
+    public static UserCredentials fromUserDetails(Map<String, Object> userDetails) {
+        // Numbers might come as Double or Integer from JSON
+        return new UserCredentials(
+            (String) userDetails.get("password"),
+            (String) userDetails.get("role"),
+            Boolean.TRUE.equals(userDetails.get("active")),
+            asLong(userDetails.get("userId")),
+            asLong(userDetails.get("organizationId")),
+            (String) userDetails.get("organizationName"),
+            userDetails.get("credentialsVersion") instanceof Number number ? number.longValue() : 0L
+        );
+    }
+
+    private static Long asLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    // Getters
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getOrganizationId() {
+        return organizationId;
+    }
+
+    public String getOrganizationName() {
+        return organizationName;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
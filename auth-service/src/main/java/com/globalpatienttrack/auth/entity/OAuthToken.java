@@ -4,18 +4,22 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "oauth_tokens")
+@Table(name = "oauth_tokens", indexes = {
+    @Index(name = "idx_oauth_tokens_refresh_expiry", columnList = "refreshTokenExpiresAt"),
+    @Index(name = "idx_oauth_tokens_active_revoked", columnList = "active, revokedAt")
+})
 public class OAuthToken {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(nullable = false, unique = true)
-    private String accessToken;
+    // SHA-256 of the token - fixed-width lookup key, the token itself is never stored
+    @Column(nullable = false, unique = true, columnDefinition = "BINARY(32)")
+    private byte[] accessTokenHash;
     
-    @Column(nullable = false, unique = true)
-    private String refreshToken;
+    @Column(nullable = false, unique = true, columnDefinition = "BINARY(32)")
+    private byte[] refreshTokenHash;
     
     @Column(nullable = false)
     private String username;
@@ -23,6 +27,10 @@ public class OAuthToken {
     @Column(nullable = false)
     private String role;
     
+    private Long userId;
+    
+    private Long organizationId;
+    
     @Column(nullable = false)
     private LocalDateTime accessTokenExpiresAt;
     
@@ -36,15 +44,20 @@ public class OAuthToken {
     
     @Column(nullable = false)
     private boolean active = true;
+    
+    // Bumped on every rotation; refresh only succeeds against the version it read
+    @Version
+    @Column(nullable = false)
+    private long version;
 
     public OAuthToken() {
         this.createdAt = LocalDateTime.now();
     }
 
-    public OAuthToken(String accessToken, String refreshToken, String username, String role,
+    public OAuthToken(byte[] accessTokenHash, byte[] refreshTokenHash, String username, String role,
                       LocalDateTime accessTokenExpiresAt, LocalDateTime refreshTokenExpiresAt) {
-        this.accessToken = accessToken;
-        this.refreshToken = refreshToken;
+        this.accessTokenHash = accessTokenHash;
+        this.refreshTokenHash = refreshTokenHash;
         this.username = username;
         this.role = role;
         this.accessTokenExpiresAt = accessTokenExpiresAt;
@@ -62,20 +75,20 @@ public class OAuthToken {
         this.id = id;
     }
 
-    public String getAccessToken() {
-        return accessToken;
+    public byte[] getAccessTokenHash() {
+        return accessTokenHash;
     }
 
-    public void setAccessToken(String accessToken) {
-        this.accessToken = accessToken;
+    public void setAccessTokenHash(byte[] accessTokenHash) {
+        this.accessTokenHash = accessTokenHash;
     }
 
-    public String getRefreshToken() {
-        return refreshToken;
+    public byte[] getRefreshTokenHash() {
+        return refreshTokenHash;
     }
 
-    public void setRefreshToken(String refreshToken) {
-        this.refreshToken = refreshToken;
+    public void setRefreshTokenHash(byte[] refreshTokenHash) {
+        this.refreshTokenHash = refreshTokenHash;
     }
 
     public String getUsername() {
@@ -94,6 +107,22 @@ public class OAuthToken {
         this.role = role;
     }
 
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getOrganizationId() {
+        return organizationId;
+    }
+
+    public void setOrganizationId(Long organizationId) {
+        this.organizationId = organizationId;
+    }
+
     public LocalDateTime getAccessTokenExpiresAt() {
         return accessTokenExpiresAt;
     }
@@ -134,6 +163,14 @@ public class OAuthToken {
         this.active = active;
     }
     
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     public boolean isAccessTokenExpired() {
         return LocalDateTime.now().isAfter(accessTokenExpiresAt);
     }
@@ -0,0 +1,15 @@
+package com.globalpatienttrack.auth.exception;
+
+public class LoginCapacityExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginCapacityExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
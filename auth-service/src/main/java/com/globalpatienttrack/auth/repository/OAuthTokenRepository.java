@@ -1,19 +1,64 @@
 package com.globalpatienttrack.auth.repository;
 
 import com.globalpatienttrack.auth.entity.OAuthToken;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OAuthTokenRepository extends JpaRepository<OAuthToken, Long> {
     
-    Optional<OAuthToken> findByAccessTokenAndActiveTrue(String accessToken);
+    Optional<OAuthToken> findByAccessTokenHashAndActiveTrue(byte[] accessTokenHash);
     
-    Optional<OAuthToken> findByRefreshTokenAndActiveTrue(String refreshToken);
+    Optional<OAuthToken> findByRefreshTokenHashAndActiveTrue(byte[] refreshTokenHash);
+
+    List<OAuthToken> findByAccessTokenHashInAndActiveTrue(Collection<byte[]> accessTokenHashes);
     
-    Optional<OAuthToken> findByUsernameAndActiveTrue(String username);
+    List<OAuthToken> findByUsernameAndActiveTrue(String username);
     
     void deleteByUsername(String username);
+
+    // Single-statement refresh rotation; returns 0 when another refresh won the race
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE OAuthToken t SET t.accessTokenHash = :accessTokenHash, t.accessTokenExpiresAt = :accessTokenExpiresAt, " +
+           "t.version = t.version + 1 WHERE t.id = :id AND t.version = :version AND t.active = true")
+    int rotateAccessToken(@Param("id") Long id,
+                          @Param("version") long version,
+                          @Param("accessTokenHash") byte[] accessTokenHash,
+                          @Param("accessTokenExpiresAt") LocalDateTime accessTokenExpiresAt);
+
+    // Revocation of one session - a conditional UPDATE, so a concurrent rotation cannot make it fail
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE OAuthToken t SET t.active = false, t.revokedAt = :revokedAt, t.version = t.version + 1 " +
+           "WHERE t.id = :id AND t.active = true")
+    int revokeById(@Param("id") Long id, @Param("revokedAt") LocalDateTime revokedAt);
+
+    // Set-based revocation of every live session of a user
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE OAuthToken t SET t.active = false, t.revokedAt = :revokedAt, t.version = t.version + 1 " +
+           "WHERE t.username = :username AND t.active = true")
+    int revokeAllByUsername(@Param("username") String username, @Param("revokedAt") LocalDateTime revokedAt);
+
+    // Keyset-paged scan of live tokens, used to warm the write-behind token store
+    @Query("SELECT t FROM OAuthToken t WHERE t.active = true AND t.refreshTokenExpiresAt > :now AND t.id > :afterId ORDER BY t.id")
+    List<OAuthToken> findActiveAfterId(@Param("now") LocalDateTime now, @Param("afterId") long afterId, Pageable pageable);
+
+    // Purge candidates - each query is served by its own index and bounded by the page size
+    @Query("SELECT t.id FROM OAuthToken t WHERE t.refreshTokenExpiresAt < :cutoff")
+    List<Long> findIdsByRefreshTokenExpiredBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Query("SELECT t.id FROM OAuthToken t WHERE t.active = false AND t.revokedAt < :cutoff")
+    List<Long> findIdsByRevokedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
 }
@@ -0,0 +1,81 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.dto.UserCredentials;
+import com.globalpatienttrack.shared.cache.ExpiringCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Near-cache of login credentials keyed by username, so repeat logins skip the
+ * user-data-service round trip. user-data-service bumps a user's credentials version
+ * whenever password, role, organization or active change and calls {@link #invalidate};
+ * the TTL bounds how stale an entry can get if such a call is lost.
+ */
+@Component
+public class CredentialCache {
+
+    // A fetch that raced with an invalidation of the same user is not cached
+    private final ExpiringCache<String, UserCredentials> entries;
+
+    @Value("${oauth2.credential-cache.enabled:true}")
+    private boolean enabled;
+
+    private final long ttlMillis;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidated;
+
+    public CredentialCache(MeterRegistry meterRegistry,
+                           @Value("${oauth2.credential-cache.ttl-seconds:900}") long ttlSeconds,
+                           @Value("${oauth2.credential-cache.max-size:10000}") int maxSize) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new ExpiringCache<>(maxSize, Duration.ofSeconds(30));
+        this.hits = meterRegistry.counter("auth.credential.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("auth.credential.cache.requests", "result", "miss");
+        this.invalidated = meterRegistry.counter("auth.credential.cache.invalidations");
+        Gauge.builder("auth.credential.cache.size", entries, ExpiringCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached credentials, or null when they have to be fetched.
+     */
+    public UserCredentials get(String username) {
+        UserCredentials credentials = enabled ? entries.get(username) : null;
+        if (credentials == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return credentials;
+    }
+
+    /**
+     * Stamp to take before fetching credentials; pass it back to {@link #put}.
+     */
+    public long stamp() {
+        return entries.stamp();
+    }
+
+    public void put(String username, UserCredentials credentials, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        entries.merge(username, credentials, System.currentTimeMillis() + ttlMillis, stamp,
+            (current, fresh) -> current.getVersion() > fresh.getVersion() ? current : fresh);
+    }
+
+    /**
+     * Drops the cached credentials of the user unless they are already at least at the given version.
+     */
+    public void invalidate(String username, long version) {
+        if (entries.invalidate(username, credentials -> credentials.getVersion() < version)) {
+            invalidated.increment();
+        }
+    }
+}
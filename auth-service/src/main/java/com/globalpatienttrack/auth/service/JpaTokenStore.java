@@ -0,0 +1,79 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.entity.OAuthToken;
+import com.globalpatienttrack.auth.repository.OAuthTokenRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Token store that reads and writes oauth_tokens on the request path.
+ */
+@Component
+@ConditionalOnProperty(name = "oauth2.token-store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaTokenStore implements TokenStore {
+
+    private final OAuthTokenRepository tokenRepository;
+
+    public JpaTokenStore(OAuthTokenRepository tokenRepository) {
+        this.tokenRepository = tokenRepository;
+    }
+
+    @Override
+    public Optional<OAuthToken> findActiveByAccessTokenHash(byte[] accessTokenHash) {
+        return tokenRepository.findByAccessTokenHashAndActiveTrue(accessTokenHash);
+    }
+
+    @Override
+    public Optional<OAuthToken> findActiveByRefreshTokenHash(byte[] refreshTokenHash) {
+        return tokenRepository.findByRefreshTokenHashAndActiveTrue(refreshTokenHash);
+    }
+
+    @Override
+    public List<OAuthToken> findActiveByAccessTokenHashes(Collection<byte[]> accessTokenHashes) {
+        return tokenRepository.findByAccessTokenHashInAndActiveTrue(accessTokenHashes);
+    }
+
+    @Override
+    public void create(OAuthToken token) {
+        tokenRepository.save(token);
+    }
+
+    @Override
+    public void revoke(OAuthToken token) {
+        // Not save(token): a refresh since the read bumped the version, and the stale entity would fail
+        LocalDateTime now = LocalDateTime.now();
+        tokenRepository.revokeById(token.getId(), now);
+        token.setActive(false);
+        token.setRevokedAt(now);
+    }
+
+    @Override
+    @Transactional
+    public List<OAuthToken> revokeAllForUsername(String username) {
+        // The SELECT only collects digests for cache retirement; the revocation itself is one UPDATE
+        List<OAuthToken> tokens = tokenRepository.findByUsernameAndActiveTrue(username);
+        if (tokens.isEmpty()) {
+            return tokens;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        tokenRepository.revokeAllByUsername(username, now);
+        for (OAuthToken token : tokens) {
+            token.setActive(false);
+            token.setRevokedAt(now);
+        }
+        return tokens;
+    }
+
+    @Override
+    public boolean rotateAccessToken(OAuthToken token, byte[] accessTokenHash, LocalDateTime accessTokenExpiresAt) {
+        // One conditional UPDATE - a concurrent refresh on another node makes this match no rows
+        return tokenRepository.rotateAccessToken(token.getId(), token.getVersion(),
+            accessTokenHash, accessTokenExpiresAt) > 0;
+    }
+}
@@ -0,0 +1,97 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.exception.LoginThrottledException;
+import com.globalpatienttrack.shared.ratelimit.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-username and per-client-IP token buckets for password logins. Checked before the
+ * user-data lookup and before BCrypt, so a credential-stuffing burst is turned away for
+ * the price of a map lookup. Buckets live in a fixed number of lock-striped LRU maps,
+ * which bounds memory no matter how many distinct usernames or addresses are tried.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final int STRIPES = 64;
+
+    @Value("${oauth2.login-throttle.enabled:true}")
+    private boolean enabled;
+
+    private final BucketMap usernameBuckets;
+    private final BucketMap clientIpBuckets;
+
+    private final Counter usernameRejections;
+    private final Counter clientIpRejections;
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${oauth2.login-throttle.max-tracked-keys:100000}") int maxTrackedKeys,
+                         @Value("${oauth2.login-throttle.username.burst:5}") long usernameBurst,
+                         @Value("${oauth2.login-throttle.username.per-minute:10}") double usernamePerMinute,
+                         @Value("${oauth2.login-throttle.client-ip.burst:50}") long clientIpBurst,
+                         @Value("${oauth2.login-throttle.client-ip.per-minute:300}") double clientIpPerMinute) {
+        this.usernameBuckets = new BucketMap(maxTrackedKeys, usernameBurst, usernamePerMinute / 60);
+        this.clientIpBuckets = new BucketMap(maxTrackedKeys, clientIpBurst, clientIpPerMinute / 60);
+        this.usernameRejections = meterRegistry.counter("auth.login.throttled", "scope", "username");
+        this.clientIpRejections = meterRegistry.counter("auth.login.throttled", "scope", "client-ip");
+    }
+
+    /**
+     * Consumes one login attempt for the caller, or throws LoginThrottledException.
+     */
+    public void check(String username, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        if (clientIp != null) {
+            TokenBucket bucket = clientIpBuckets.bucketFor(clientIp);
+            if (!bucket.tryConsume()) {
+                clientIpRejections.increment();
+                throw new LoginThrottledException("Too many login attempts from this address", bucket.getSecondsUntilNextPermit());
+            }
+        }
+        if (username != null) {
+            TokenBucket bucket = usernameBuckets.bucketFor(username.toLowerCase(Locale.ROOT));
+            if (!bucket.tryConsume()) {
+                usernameRejections.increment();
+                throw new LoginThrottledException("Too many login attempts for this user", bucket.getSecondsUntilNextPermit());
+            }
+        }
+    }
+
+    private static final class BucketMap {
+        private final Map<String, TokenBucket>[] stripes;
+        private final long burst;
+        private final double refillPerSecond;
+
+        @SuppressWarnings("unchecked")
+        private BucketMap(int maxKeys, long burst, double refillPerSecond) {
+            this.burst = burst;
+            this.refillPerSecond = refillPerSecond;
+            this.stripes = new Map[STRIPES];
+            int perStripe = Math.max(1, maxKeys / STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                        return size() > perStripe;
+                    }
+                };
+            }
+        }
+
+        private TokenBucket bucketFor(String key) {
+            Map<String, TokenBucket> stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+            synchronized (stripe) {
+                return stripe.computeIfAbsent(key, k -> new TokenBucket(burst, refillPerSecond));
+            }
+        }
+    }
+}
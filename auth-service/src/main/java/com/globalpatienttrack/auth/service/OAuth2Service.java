@@ -1,27 +1,63 @@
 package com.globalpatienttrack.auth.service;
 
 import com.globalpatienttrack.auth.dto.TokenResponse;
+import com.globalpatienttrack.auth.dto.UserCredentials;
 import com.globalpatienttrack.auth.entity.OAuthToken;
-import com.globalpatienttrack.auth.repository.OAuthTokenRepository;
+import com.globalpatienttrack.auth.exception.LoginCapacityExceededException;
+import com.globalpatienttrack.auth.exception.LoginThrottledException;
+import com.globalpatienttrack.shared.security.SignedTokenCodec;
+import com.globalpatienttrack.shared.security.TokenClaims;
+import com.globalpatienttrack.shared.security.TokenDigests;
+import com.globalpatienttrack.shared.security.TokenGenerator;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @Service
 public class OAuth2Service {
 
     @Autowired
-    private OAuthTokenRepository tokenRepository;
+    private TokenStore tokenStore;
 
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private TokenIntrospectionCache introspectionCache;
+
+    @Autowired
+    private PasswordVerificationService passwordVerificationService;
+
+    @Autowired
+    private RevocationFeed revocationFeed;
+
+    @Autowired
+    private RefreshCoalescer refreshCoalescer;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private PhaseTimer phaseTimer;
+
+    @Autowired
+    private CredentialCache credentialCache;
+
+    @Autowired
+    private PasswordRehashService passwordRehashService;
+
     @Value("${service.user-data-url}")
     private String userDataServiceUrl;
 
@@ -31,68 +67,101 @@ public class OAuth2Service {
     @Value("${oauth2.refresh-token.expiration:2592000}")
     private long refreshTokenExpiration;
 
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Value("${oauth2.validate-batch.max-size:200}")
+    private int validateBatchMaxSize;
 
-    public TokenResponse login(String username, String password) {
-        try {
-            String url = userDataServiceUrl + "/users/internal/auth/" + username;
-            Map<String, Object> userDetails = restTemplate.getForObject(url, Map.class);
-            
-            if (userDetails == null) {
-                throw new RuntimeException("User not found");
-            }
+    // opaque = random reference tokens, signed = self-verifying HS256 tokens
+    @Value("${oauth2.token.format:opaque}")
+    private String tokenFormat;
+
+    @Value("${oauth2.token.signing-key:}")
+    private String tokenSigningKey;
+
+    private SignedTokenCodec signedTokenCodec;
 
-            // VALIDATE PASSWORD
-            String storedPassword = (String) userDetails.get("password");
-            if (storedPassword == null || !passwordEncoder.matches(password, storedPassword)) {
-                throw new RuntimeException("Invalid username or password");
+    @PostConstruct
+    void initTokenFormat() {
+        if ("signed".equalsIgnoreCase(tokenFormat)) {
+            signedTokenCodec = SignedTokenCodec.fromKey(tokenSigningKey);
+            if (signedTokenCodec == null) {
+                throw new IllegalStateException("oauth2.token.signing-key is required when oauth2.token.format=signed");
             }
+        } else if (!"opaque".equalsIgnoreCase(tokenFormat)) {
+            throw new IllegalStateException("Unsupported oauth2.token.format: " + tokenFormat);
+        }
+    }
 
-            String role = (String) userDetails.get("role");
-            Boolean active = (Boolean) userDetails.get("active");
-            String organizationName = (String) userDetails.get("organizationName");
-            Long organizationId = null;
-            Long userId = null;
-            
-            // Extract organizationId (might come as Double from JSON)
-            Object orgIdObj = userDetails.get("organizationId");
-            if (orgIdObj instanceof Number) {
-                organizationId = ((Number) orgIdObj).longValue();
+    /**
+     * clientIp is the caller's address as seen by the gateway, used for throttling (may be null).
+     */
+    public TokenResponse login(String username, String password, String clientIp) {
+        long start = System.nanoTime();
+        long t = start;
+        try {
+            // Before the remote user lookup and BCrypt - rejected attempts must stay cheap
+            loginThrottle.check(username, clientIp);
+            t = phaseTimer.record(PhaseTimer.LOGIN, "throttle", t);
+
+            UserCredentials credentials = credentialCache.get(username);
+            boolean fromCache = credentials != null;
+            if (!fromCache) {
+                credentials = fetchCredentials(username);
             }
-            
-            // Extract userId (might come as Double from JSON)
-            Object userIdObj = userDetails.get("userId");
-            if (userIdObj instanceof Number) {
-                userId = ((Number) userIdObj).longValue();
+            t = phaseTimer.record(PhaseTimer.LOGIN, "user-lookup", t);
+
+            // VALIDATE PASSWORD - timed on failure too, wrong passwords cost the same BCrypt work
+            try {
+                boolean matches = credentials.getPasswordHash() != null
+                    && passwordVerificationService.matches(password, credentials.getPasswordHash());
+                if (!matches && fromCache) {
+                    // The password may have changed and the invalidation got lost - re-check only if it did
+                    UserCredentials fresh = fetchCredentials(username);
+                    if (fresh.getVersion() != credentials.getVersion()) {
+                        credentials = fresh;
+                        matches = credentials.getPasswordHash() != null
+                            && passwordVerificationService.matches(password, credentials.getPasswordHash());
+                    }
+                }
+                if (!matches) {
+                    throw new RuntimeException("Invalid username or password");
+                }
+                passwordRehashService.rehashIfNeeded(username, password, credentials.getPasswordHash());
+            } finally {
+                t = phaseTimer.record(PhaseTimer.LOGIN, "password", t);
             }
 
-            if (!active) {
+            String role = credentials.getRole();
+            String organizationName = credentials.getOrganizationName();
+            Long organizationId = credentials.getOrganizationId();
+            Long userId = credentials.getUserId();
+
+            if (!credentials.isActive()) {
                 throw new RuntimeException("User account is inactive");
             }
 
-            tokenRepository.findByUsernameAndActiveTrue(username)
-                .ifPresent(token -> {
-                    token.setActive(false);
-                    token.setRevokedAt(LocalDateTime.now());
-                    tokenRepository.save(token);
-                });
-
-            String accessToken = generateToken();
-            String refreshToken = generateToken();
+            revokeAllSessions(username);
+            t = phaseTimer.record(PhaseTimer.LOGIN, "revoke-previous", t);
 
             LocalDateTime now = LocalDateTime.now();
             LocalDateTime accessExpiry = now.plusSeconds(accessTokenExpiration);
             LocalDateTime refreshExpiry = now.plusSeconds(refreshTokenExpiration);
 
+            String accessToken = generateAccessToken(username, role, userId, organizationId, now, accessExpiry);
+            String refreshToken = generateToken();
+            t = phaseTimer.record(PhaseTimer.LOGIN, "issue", t);
+
             OAuthToken oauthToken = new OAuthToken(
-                accessToken,
-                refreshToken,
+                TokenDigests.sha256(accessToken),
+                TokenDigests.sha256(refreshToken),
                 username,
                 role,
                 accessExpiry,
                 refreshExpiry
             );
-            tokenRepository.save(oauthToken);
+            oauthToken.setUserId(userId);
+            oauthToken.setOrganizationId(organizationId);
+            tokenStore.create(oauthToken);
+            phaseTimer.record(PhaseTimer.LOGIN, "store", t);
 
             return new TokenResponse(
                 accessToken,
@@ -104,28 +173,66 @@ public class OAuth2Service {
                 userId
             );
 
+        } catch (LoginCapacityExceededException | LoginThrottledException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Authentication failed: " + e.getMessage(), e);
+        } finally {
+            phaseTimer.record(PhaseTimer.LOGIN, "total", start);
         }
     }
 
+    private UserCredentials fetchCredentials(String username) {
+        long stamp = credentialCache.stamp();
+        String url = userDataServiceUrl + "/users/internal/auth/" + username;
+        Map<String, Object> userDetails = restTemplate.getForObject(url, Map.class);
+
+        if (userDetails == null) {
+            throw new RuntimeException("User not found");
+        }
+
+        UserCredentials credentials = UserCredentials.fromUserDetails(userDetails);
+        credentialCache.put(username, credentials, stamp);
+        return credentials;
+    }
+
     public TokenResponse refresh(String refreshToken) {
-        OAuthToken token = tokenRepository.findByRefreshTokenAndActiveTrue(refreshToken)
+        long start = System.nanoTime();
+        try {
+            byte[] refreshTokenHash = TokenDigests.sha256(refreshToken);
+            return refreshCoalescer.coalesce(TokenDigests.toHex(refreshTokenHash),
+                () -> rotateAccessToken(refreshToken, refreshTokenHash));
+        } finally {
+            phaseTimer.record(PhaseTimer.REFRESH, "total", start);
+        }
+    }
+
+    private TokenResponse rotateAccessToken(String refreshToken, byte[] refreshTokenHash) {
+        long t = System.nanoTime();
+        OAuthToken token = tokenStore.findActiveByRefreshTokenHash(refreshTokenHash)
             .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
+        t = phaseTimer.record(PhaseTimer.REFRESH, "lookup", t);
 
         if (token.isRefreshTokenExpired()) {
-            token.setActive(false);
-            token.setRevokedAt(LocalDateTime.now());
-            tokenRepository.save(token);
+            tokenStore.revoke(token);
+            retireSession(token);
             throw new RuntimeException("Refresh token expired");
         }
 
-        String newAccessToken = generateToken();
-        LocalDateTime newAccessExpiry = LocalDateTime.now().plusSeconds(accessTokenExpiration);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime newAccessExpiry = now.plusSeconds(accessTokenExpiration);
+        String newAccessToken = generateAccessToken(token.getUsername(), token.getRole(),
+            token.getUserId(), token.getOrganizationId(), now, newAccessExpiry);
+        t = phaseTimer.record(PhaseTimer.REFRESH, "issue", t);
 
-        token.setAccessToken(newAccessToken);
-        token.setAccessTokenExpiresAt(newAccessExpiry);
-        tokenRepository.save(token);
+        // Only digests are stored, so the winner's access token cannot be handed out here. Concurrent
+        // refreshes on this node share one rotation (RefreshCoalescer); across nodes the loser retries.
+        if (!tokenStore.rotateAccessToken(token, TokenDigests.sha256(newAccessToken), newAccessExpiry)) {
+            throw new RuntimeException("Refresh token was used concurrently, please retry");
+        }
+        t = phaseTimer.record(PhaseTimer.REFRESH, "rotate", t);
+        retireAccessToken(token.getAccessTokenHash(), token.getAccessTokenExpiresAt());
+        phaseTimer.record(PhaseTimer.REFRESH, "retire-previous", t);
 
         return new TokenResponse(
             newAccessToken,
@@ -136,32 +243,161 @@ public class OAuth2Service {
     }
 
     public Map<String, Object> validateToken(String accessToken) {
-        OAuthToken token = tokenRepository.findByAccessTokenAndActiveTrue(accessToken)
-            .orElseThrow(() -> new RuntimeException("Invalid access token"));
+        long start = System.nanoTime();
+        try {
+            byte[] accessTokenHash = TokenDigests.sha256(accessToken);
+            String cacheKey = TokenDigests.toHex(accessTokenHash);
+            Map<String, Object> cached = introspectionCache.get(cacheKey);
+            long t = phaseTimer.record(PhaseTimer.VALIDATE, "cache", start);
+            if (cached != null) {
+                return cached;
+            }
+
+            if (failsSignatureCheck(accessToken)) {
+                throw new RuntimeException("Invalid access token");
+            }
+            t = phaseTimer.record(PhaseTimer.VALIDATE, "signature", t);
+
+            long stamp = introspectionCache.stamp();
+            OAuthToken token = tokenStore.findActiveByAccessTokenHash(accessTokenHash)
+                .orElseThrow(() -> new RuntimeException("Invalid access token"));
+            phaseTimer.record(PhaseTimer.VALIDATE, "lookup", t);
+
+            if (token.isAccessTokenExpired()) {
+                throw new RuntimeException("Access token expired");
+            }
 
-        if (token.isAccessTokenExpired()) {
-            throw new RuntimeException("Access token expired");
+            Map<String, Object> claims = toClaims(token);
+            introspectionCache.put(cacheKey, claims, token.getAccessTokenExpiresAt(), stamp);
+            return claims;
+        } finally {
+            phaseTimer.record(PhaseTimer.VALIDATE, "total", start);
         }
+    }
 
-        return Map.of(
-            "username", token.getUsername(),
-            "role", token.getRole(),
-            "active", token.isActive(),
-            "expiresAt", token.getAccessTokenExpiresAt().toString()
-        );
+    /**
+     * Validates many access tokens with at most one database query.
+     * Returns token -> claims for the valid tokens; invalid or expired tokens are omitted.
+     */
+    public Map<String, Map<String, Object>> validateTokens(Collection<String> accessTokens) {
+        if (accessTokens.size() > validateBatchMaxSize) {
+            throw new RuntimeException("At most " + validateBatchMaxSize + " tokens can be validated per request");
+        }
+
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        Map<String, String> tokensByDigest = new HashMap<>();
+        List<byte[]> missingHashes = new ArrayList<>();
+
+        for (String accessToken : accessTokens) {
+            if (accessToken == null || result.containsKey(accessToken) || failsSignatureCheck(accessToken)) {
+                continue;
+            }
+            byte[] accessTokenHash = TokenDigests.sha256(accessToken);
+            String cacheKey = TokenDigests.toHex(accessTokenHash);
+            Map<String, Object> cached = introspectionCache.get(cacheKey);
+            if (cached != null) {
+                result.put(accessToken, cached);
+            } else if (tokensByDigest.putIfAbsent(cacheKey, accessToken) == null) {
+                missingHashes.add(accessTokenHash);
+            }
+        }
+
+        if (missingHashes.isEmpty()) {
+            return result;
+        }
+
+        long stamp = introspectionCache.stamp();
+        for (OAuthToken token : tokenStore.findActiveByAccessTokenHashes(missingHashes)) {
+            if (token.isAccessTokenExpired()) {
+                continue;
+            }
+            String cacheKey = TokenDigests.toHex(token.getAccessTokenHash());
+            Map<String, Object> claims = toClaims(token);
+            introspectionCache.put(cacheKey, claims, token.getAccessTokenExpiresAt(), stamp);
+            result.put(tokensByDigest.get(cacheKey), claims);
+        }
+        return result;
     }
 
     public void revokeToken(String accessToken) {
-        tokenRepository.findByAccessTokenAndActiveTrue(accessToken)
-            .ifPresent(token -> {
-                token.setActive(false);
-                token.setRevokedAt(LocalDateTime.now());
-                tokenRepository.save(token);
-            });
+        byte[] accessTokenHash = TokenDigests.sha256(accessToken);
+        tokenStore.findActiveByAccessTokenHash(accessTokenHash)
+            .ifPresentOrElse(token -> {
+                tokenStore.revoke(token);
+                retireSession(token);
+            }, () -> introspectionCache.invalidate(TokenDigests.toHex(accessTokenHash)));
+    }
+
+    /**
+     * Logs the user out everywhere: every active token is revoked with one statement and
+     * every access token is dropped from the caches. Returns the number of revoked sessions.
+     */
+    public int revokeAllSessions(String username) {
+        List<OAuthToken> revoked = tokenStore.revokeAllForUsername(username);
+        for (OAuthToken token : revoked) {
+            retireSession(token);
+        }
+        return revoked.size();
+    }
+
+    /**
+     * A session was revoked: retire its access token and forget any refresh result
+     * remembered for it.
+     */
+    private void retireSession(OAuthToken token) {
+        refreshCoalescer.forget(TokenDigests.toHex(token.getRefreshTokenHash()));
+        retireAccessToken(token.getAccessTokenHash(), token.getAccessTokenExpiresAt());
+    }
+
+    /**
+     * An access token stopped being valid before its expiry: drop it from the local cache
+     * and tell downstream caches through the revocation feed.
+     */
+    private void retireAccessToken(byte[] accessTokenHash, LocalDateTime expiresAt) {
+        String digest = TokenDigests.toHex(accessTokenHash);
+        introspectionCache.invalidate(digest);
+        revocationFeed.publish(digest, expiresAt.atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+
+    // Signed tokens that fail verification never need a database round trip
+    private boolean failsSignatureCheck(String accessToken) {
+        return signedTokenCodec != null && SignedTokenCodec.looksSigned(accessToken)
+            && signedTokenCodec.verify(accessToken) == null;
+    }
+
+    private Map<String, Object> toClaims(OAuthToken token) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("username", token.getUsername());
+        claims.put("role", token.getRole());
+        claims.put("active", token.isActive());
+        claims.put("expiresAt", token.getAccessTokenExpiresAt().toString());
+        if (token.getUserId() != null) {
+            claims.put("userId", token.getUserId());
+        }
+        if (token.getOrganizationId() != null) {
+            claims.put("organizationId", token.getOrganizationId());
+        }
+        return Collections.unmodifiableMap(claims);
+    }
+
+    private String generateAccessToken(String username, String role, Long userId, Long organizationId,
+                                       LocalDateTime issuedAt, LocalDateTime expiresAt) {
+        if (signedTokenCodec == null) {
+            return generateToken();
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        return signedTokenCodec.issue(new TokenClaims(
+            username,
+            role,
+            userId,
+            organizationId,
+            issuedAt.atZone(zone).toEpochSecond(),
+            expiresAt.atZone(zone).toEpochSecond(),
+            TokenGenerator.newTokenId()
+        ));
     }
 
     private String generateToken() {
-        return UUID.randomUUID().toString().replace("-", "") + 
-               UUID.randomUUID().toString().replace("-", "");
+        return TokenGenerator.newToken();
     }
 }
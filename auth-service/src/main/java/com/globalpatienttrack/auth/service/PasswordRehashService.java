@@ -0,0 +1,110 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.shared.security.ServiceCredential;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-hashes passwords whose BCrypt cost differs from the calibrated target, after a
+ * successful login when the clear-text password is at hand. Runs on a single background
+ * thread with a small queue - when it is busy, the re-hash is simply skipped and happens
+ * on a later login. user-data-service only stores the new hash if the old one is still current,
+ * and only accepts it with a service credential - without internal.service-key nothing is re-hashed.
+ */
+@Service
+public class PasswordRehashService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordRehashService.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final RestTemplate restTemplate;
+    private final ThreadPoolExecutor executor;
+    private final ServiceCredential serviceCredential;
+
+    @Value("${service.user-data-url}")
+    private String userDataServiceUrl;
+
+    @Value("${password-hashing.rehash-on-login:true}")
+    private boolean enabled;
+
+    private final Counter rehashed;
+    private final Counter conflicts;
+    private final Counter skipped;
+    private final Counter failed;
+
+    public PasswordRehashService(PasswordEncoder passwordEncoder, RestTemplate restTemplate, MeterRegistry meterRegistry,
+                                 @Value("${password-hashing.rehash-queue-capacity:32}") int queueCapacity,
+                                 @Value("${internal.service-key:}") String serviceKey,
+                                 @Value("${spring.application.name}") String serviceName) {
+        this.passwordEncoder = passwordEncoder;
+        this.restTemplate = restTemplate;
+        this.serviceCredential = ServiceCredential.fromKey(serviceKey, serviceName);
+        this.executor = new ThreadPoolExecutor(
+                1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-rehash");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.rehashed = meterRegistry.counter("auth.password.rehash", "result", "rehashed");
+        this.conflicts = meterRegistry.counter("auth.password.rehash", "result", "conflict");
+        this.skipped = meterRegistry.counter("auth.password.rehash", "result", "skipped");
+        this.failed = meterRegistry.counter("auth.password.rehash", "result", "failed");
+    }
+
+    /**
+     * Call after rawPassword was verified against storedHash. Returns immediately.
+     */
+    public void rehashIfNeeded(String username, String rawPassword, String storedHash) {
+        if (!enabled || serviceCredential == null || !passwordEncoder.upgradeEncoding(storedHash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> rehash(username, rawPassword, storedHash));
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+        }
+    }
+
+    private void rehash(String username, String rawPassword, String storedHash) {
+        try {
+            String newHash = passwordEncoder.encode(rawPassword);
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(ServiceCredential.HEADER, serviceCredential.issue());
+            restTemplate.exchange(userDataServiceUrl + "/users/internal/auth/" + username + "/password-hash",
+                    HttpMethod.PUT, new HttpEntity<>(Map.of("expectedHash", storedHash, "newHash", newHash), headers), Void.class);
+            rehashed.increment();
+        } catch (HttpClientErrorException.Conflict e) {
+            // The password changed since this login read it - nothing to do
+            conflicts.increment();
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Could not re-hash password of {}: {}", username, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
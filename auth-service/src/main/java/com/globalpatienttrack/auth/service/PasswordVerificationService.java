@@ -0,0 +1,108 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.exception.LoginCapacityExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt password checks on a dedicated, fixed-size pool with a bounded queue.
+ * A login burst can only occupy this pool; once the queue is full further logins are
+ * rejected immediately instead of pinning every Tomcat worker on hashing.
+ */
+@Service
+public class PasswordVerificationService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final long retryAfterSeconds;
+
+    private final Timer verificationTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejections;
+
+    public PasswordVerificationService(PasswordEncoder passwordEncoder,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${oauth2.password-verification.threads:0}") int threads,
+                                       @Value("${oauth2.password-verification.queue-capacity:64}") int queueCapacity,
+                                       @Value("${oauth2.password-verification.timeout-ms:5000}") long timeoutMillis,
+                                       @Value("${oauth2.password-verification.retry-after-seconds:2}") long retryAfterSeconds) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        // BCrypt is CPU bound - default to one thread per core
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-verify-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.verificationTimer = Timer.builder("auth.password.verification")
+                .description("Time spent hashing and comparing a password")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("auth.password.verification.queue.wait")
+                .description("Time a password check waited for a verification thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejections = meterRegistry.counter("auth.password.verification.rejected");
+        Gauge.builder("auth.password.verification.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("auth.password.verification.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        long submittedAt = System.nanoTime();
+        Future<Boolean> result;
+        try {
+            result = executor.submit(() -> {
+                queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return verificationTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new LoginCapacityExceededException("Too many concurrent logins, please retry shortly", retryAfterSeconds);
+        }
+
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            rejections.increment();
+            throw new LoginCapacityExceededException("Password verification timed out, please retry shortly", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while verifying password", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Password verification failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,70 @@
+package com.globalpatienttrack.auth.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases of login, refresh and validate as auth.phase{operation, phase}.
+ * When a breakdown has been started on the current thread (see ServerTimingAdvice)
+ * the phase durations of that request are also collected for its Server-Timing header.
+ */
+@Component
+public class PhaseTimer {
+
+    public static final String LOGIN = "login";
+    public static final String REFRESH = "refresh";
+    public static final String VALIDATE = "validate";
+
+    private static final ThreadLocal<Map<String, Long>> BREAKDOWN = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public PhaseTimer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records the time since startNanos against the phase and returns the current nanoTime,
+     * so consecutive phases can be chained: {@code t = phaseTimer.record(LOGIN, "password", t);}
+     */
+    public long record(String operation, String phase, long startNanos) {
+        long now = System.nanoTime();
+        long elapsed = now - startNanos;
+        timers.computeIfAbsent(operation + ':' + phase, key -> Timer.builder("auth.phase")
+                .description("Time spent in one phase of an auth-service operation")
+                .tag("operation", operation)
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(elapsed, TimeUnit.NANOSECONDS);
+
+        Map<String, Long> breakdown = BREAKDOWN.get();
+        if (breakdown != null) {
+            breakdown.merge(operation + ';' + phase, elapsed, Long::sum);
+        }
+        return now;
+    }
+
+    /**
+     * Starts collecting a per-request breakdown on this thread.
+     */
+    public static void startBreakdown() {
+        BREAKDOWN.set(new LinkedHashMap<>());
+    }
+
+    /**
+     * Stops collecting and returns "operation;phase" -> nanoseconds, or null if no breakdown was started.
+     */
+    public static Map<String, Long> endBreakdown() {
+        Map<String, Long> breakdown = BREAKDOWN.get();
+        BREAKDOWN.remove();
+        return breakdown;
+    }
+}
@@ -0,0 +1,108 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.dto.TokenResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent refreshes of the same refresh token into one rotation.
+ * Callers that arrive while a rotation is running wait for it, and callers that arrive
+ * shortly after it finished get the same result, so several browser tabs reconnecting
+ * at once all receive the same new access token and cause a single row write.
+ * Revoking a session drops its remembered result, so a revoked refresh token is never
+ * answered from memory.
+ */
+@Component
+public class RefreshCoalescer {
+
+    private static final int PRUNE_THRESHOLD = 1024;
+
+    private final Map<String, CompletableFuture<TokenResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Recent> recent = new ConcurrentHashMap<>();
+    private final AtomicLong revocations = new AtomicLong();
+
+    private final long windowMillis;
+
+    public RefreshCoalescer(@Value("${oauth2.refresh.dedup-window-ms:5000}") long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Runs the rotation for the given refresh token digest unless an identical one is running or just completed.
+     */
+    public TokenResponse coalesce(String refreshTokenDigest, Supplier<TokenResponse> rotation) {
+        long now = System.currentTimeMillis();
+        Recent completed = recent.get(refreshTokenDigest);
+        if (completed != null && now - completed.completedAt < windowMillis) {
+            return completed.response;
+        }
+
+        CompletableFuture<TokenResponse> mine = new CompletableFuture<>();
+        CompletableFuture<TokenResponse> running = inFlight.putIfAbsent(refreshTokenDigest, mine);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            long revocationsBefore = revocations.get();
+            TokenResponse response = rotation.get();
+            // A revocation may have landed while rotating; then let the next caller go to the store
+            if (revocations.get() == revocationsBefore) {
+                remember(refreshTokenDigest, response, now);
+            }
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(refreshTokenDigest, mine);
+        }
+    }
+
+    /**
+     * Forgets the result remembered for a refresh token digest; called when its session is revoked.
+     */
+    public void forget(String refreshTokenDigest) {
+        revocations.incrementAndGet();
+        recent.remove(refreshTokenDigest);
+    }
+
+    private void remember(String refreshTokenDigest, TokenResponse response, long now) {
+        if (windowMillis <= 0) {
+            return;
+        }
+        if (recent.size() >= PRUNE_THRESHOLD) {
+            recent.values().removeIf(entry -> now - entry.completedAt >= windowMillis);
+        }
+        recent.put(refreshTokenDigest, new Recent(response, System.currentTimeMillis()));
+    }
+
+    private TokenResponse await(CompletableFuture<TokenResponse> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Recent {
+        private final TokenResponse response;
+        private final long completedAt;
+
+        private Recent(TokenResponse response, long completedAt) {
+            this.response = response;
+            this.completedAt = completedAt;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.dto.RevocationEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server-Sent Events feed of revoked access token digests, so downstream caches can
+ * hold introspection results for the full token lifetime and still honour logout.
+ *
+ * Every event carries the id "epoch:sequence". Sequences increase monotonically within
+ * an epoch (one auth-service process lifetime). A subscriber that reconnects with its
+ * last id is replayed everything it missed from an in-memory ring buffer; if it is too
+ * far behind, or the epoch changed, it receives a "reset" event and must drop its cache.
+ * A fresh subscriber gets "ready" followed by every buffered revocation, so it also learns
+ * of signed tokens revoked before it connected - or "reset" if revocations of tokens that
+ * have not expired yet were already pushed out of the buffer.
+ * The feed is node-local: it reports revocations handled by this instance.
+ */
+@Service
+public class RevocationFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationFeed.class);
+
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+
+    private final RevocationEvent[] buffer;
+    private long nextSequence = 1;
+    // Latest token expiry among events pushed out of the buffer, epoch seconds
+    private long overwrittenExpiresAt;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // All sends happen on this thread, so revoke calls never block on a slow subscriber
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "revocation-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long emitterTimeoutMillis;
+
+    public RevocationFeed(@Value("${oauth2.revocation-feed.buffer-size:10000}") int bufferSize,
+                          @Value("${oauth2.revocation-feed.emitter-timeout-ms:1800000}") long emitterTimeoutMillis) {
+        this.buffer = new RevocationEvent[bufferSize];
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+    }
+
+    public void publish(String tokenDigest, long expiresAt) {
+        RevocationEvent event;
+        synchronized (this) {
+            event = new RevocationEvent(nextSequence++, tokenDigest, expiresAt);
+            int slot = (int) (event.getSequence() % buffer.length);
+            if (buffer[slot] != null) {
+                overwrittenExpiresAt = Math.max(overwrittenExpiresAt, buffer[slot].getExpiresAt());
+            }
+            buffer[slot] = event;
+        }
+        dispatcher.execute(() -> broadcast(event));
+    }
+
+    /**
+     * Opens a stream. lastEventId is the id of the last event the caller processed, or null for a fresh subscriber.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> subscriber.close());
+        dispatcher.execute(() -> start(subscriber, lastEventId));
+        return emitter;
+    }
+
+    @Scheduled(fixedRateString = "${oauth2.revocation-feed.heartbeat-ms:15000}")
+    public void heartbeat() {
+        dispatcher.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                send(subscriber, SseEmitter.event().comment("keepalive"));
+            }
+        });
+    }
+
+    private void start(Subscriber subscriber, String lastEventId) {
+        long resumeFrom = resumeSequence(lastEventId);
+        List<RevocationEvent> backlog = new ArrayList<>();
+        long current;
+        long oldest;
+        boolean reset;
+        synchronized (this) {
+            current = nextSequence - 1;
+            oldest = Math.max(1, nextSequence - buffer.length);
+            boolean lostUnexpired = overwrittenExpiresAt > System.currentTimeMillis() / 1000;
+            reset = resumeFrom == -1 || resumeFrom > current + 1 || (resumeFrom > 0 && resumeFrom < oldest)
+                || (resumeFrom == 0 && lostUnexpired);
+            if (!reset) {
+                for (long sequence = resumeFrom == 0 ? oldest : resumeFrom; sequence <= current; sequence++) {
+                    backlog.add(buffer[(int) (sequence % buffer.length)]);
+                }
+            }
+        }
+
+        if (reset) {
+            send(subscriber, SseEmitter.event().id(eventId(current)).name("reset").data(current));
+        } else if (resumeFrom == 0) {
+            // The replay that follows brings the subscriber up to current
+            send(subscriber, SseEmitter.event().id(eventId(oldest - 1)).name("ready").data(current));
+        }
+        for (RevocationEvent event : backlog) {
+            sendEvent(subscriber, event);
+        }
+        subscriber.lastSequence = Math.max(subscriber.lastSequence, current);
+        if (!subscriber.closed) {
+            subscribers.add(subscriber);
+        }
+    }
+
+    private void broadcast(RevocationEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            // Already delivered as part of this subscriber's replay
+            if (event.getSequence() > subscriber.lastSequence) {
+                sendEvent(subscriber, event);
+            }
+        }
+    }
+
+    private void sendEvent(Subscriber subscriber, RevocationEvent event) {
+        send(subscriber, SseEmitter.event().id(eventId(event.getSequence())).name("revoked").data(event));
+        subscriber.lastSequence = event.getSequence();
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.closed) {
+            return;
+        }
+        try {
+            subscriber.emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            subscriber.close();
+            logger.debug("Revocation feed subscriber disconnected: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 0 = fresh subscriber, -1 = unknown position (other epoch or malformed id), otherwise the next sequence to send.
+     */
+    private long resumeSequence(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return 0;
+        }
+        int separator = lastEventId.indexOf(':');
+        if (separator < 0 || !epoch.equals(lastEventId.substring(0, separator))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1)) + 1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String eventId(long sequence) {
+        return epoch + ":" + sequence;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private volatile long lastSequence;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+}
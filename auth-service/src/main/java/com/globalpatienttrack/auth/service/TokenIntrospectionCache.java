@@ -0,0 +1,75 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.shared.cache.ExpiringCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+
+/**
+ * In-memory cache of successful token introspections, keyed by the hex SHA-256 of
+ * the access token. Entries expire together with the access token and are dropped
+ * as soon as the token is revoked or rotated, so a hit is as good as a database read.
+ */
+@Component
+public class TokenIntrospectionCache {
+
+    // A lookup older than this, or one that raced with the revoke of its token, is never cached
+    private final ExpiringCache<String, Map<String, Object>> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter expiredEvictions;
+    private final Counter sizeEvictions;
+    private final Counter revokedEvictions;
+
+    public TokenIntrospectionCache(MeterRegistry meterRegistry,
+                                   @Value("${oauth2.introspection-cache.max-size:10000}") int maxSize) {
+        this.hits = meterRegistry.counter("auth.introspection.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("auth.introspection.cache.requests", "result", "miss");
+        this.expiredEvictions = meterRegistry.counter("auth.introspection.cache.evictions", "cause", "expired");
+        this.sizeEvictions = meterRegistry.counter("auth.introspection.cache.evictions", "cause", "size");
+        this.revokedEvictions = meterRegistry.counter("auth.introspection.cache.evictions", "cause", "revoked");
+        this.entries = new ExpiringCache<>(maxSize, Duration.ofSeconds(30),
+            (digest, claims, cause) -> (cause == RemovalCause.EXPIRED ? expiredEvictions : sizeEvictions).increment());
+        Gauge.builder("auth.introspection.cache.size", entries, ExpiringCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached claims for the token, or null when the token has to be looked up.
+     */
+    public Map<String, Object> get(String tokenDigest) {
+        Map<String, Object> claims = entries.get(tokenDigest);
+        if (claims == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return claims;
+    }
+
+    /**
+     * Stamp to take before reading the token from the database; pass it back to {@link #put}.
+     */
+    public long stamp() {
+        return entries.stamp();
+    }
+
+    public void put(String tokenDigest, Map<String, Object> claims, LocalDateTime expiresAt, long stamp) {
+        entries.put(tokenDigest, claims, expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), stamp);
+    }
+
+    public void invalidate(String tokenDigest) {
+        if (entries.invalidate(tokenDigest)) {
+            revokedEvictions.increment();
+        }
+    }
+}
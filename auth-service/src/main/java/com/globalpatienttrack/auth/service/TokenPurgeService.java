@@ -0,0 +1,105 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.repository.OAuthTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Periodically removes oauth_tokens rows that can never be used again: rows whose
+ * refresh token has expired, and rows revoked longer ago than the retention window.
+ * Deletes run in small primary-key chunks with a pause in between, so the reaper
+ * never holds long locks or competes with logins for the table.
+ */
+@Service
+public class TokenPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenPurgeService.class);
+
+    private final OAuthTokenRepository tokenRepository;
+
+    @Value("${oauth2.token-purge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${oauth2.token-purge.revoked-retention-days:7}")
+    private long revokedRetentionDays;
+
+    @Value("${oauth2.token-purge.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${oauth2.token-purge.chunk-pause-ms:100}")
+    private long chunkPauseMillis;
+
+    @Value("${oauth2.token-purge.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+
+    private final Counter expiredPurged;
+    private final Counter revokedPurged;
+    private final Timer chunkTimer;
+
+    public TokenPurgeService(OAuthTokenRepository tokenRepository, MeterRegistry meterRegistry) {
+        this.tokenRepository = tokenRepository;
+        this.expiredPurged = meterRegistry.counter("auth.token.purge.rows", "reason", "expired");
+        this.revokedPurged = meterRegistry.counter("auth.token.purge.rows", "reason", "revoked");
+        this.chunkTimer = Timer.builder("auth.token.purge.chunk")
+                .description("Time to select and delete one chunk of purgeable tokens")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${oauth2.token-purge.interval-ms:3600000}",
+               initialDelayString = "${oauth2.token-purge.initial-delay-ms:60000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime revokedCutoff = now.minusDays(revokedRetentionDays);
+
+        int expired = purgeInChunks(page -> tokenRepository.findIdsByRefreshTokenExpiredBefore(now, page), expiredPurged);
+        int revoked = purgeInChunks(page -> tokenRepository.findIdsByRevokedBefore(revokedCutoff, page), revokedPurged);
+
+        if (expired > 0 || revoked > 0) {
+            logger.info("Purged {} expired and {} revoked oauth tokens", expired, revoked);
+        }
+    }
+
+    private int purgeInChunks(Function<Pageable, List<Long>> candidates, Counter purged) {
+        int total = 0;
+        Pageable firstChunk = PageRequest.of(0, chunkSize);
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            long start = System.nanoTime();
+            List<Long> ids = candidates.apply(firstChunk);
+            if (!ids.isEmpty()) {
+                tokenRepository.deleteAllByIdInBatch(ids);
+            }
+            chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            purged.increment(ids.size());
+            total += ids.size();
+            if (ids.size() < chunkSize) {
+                break;
+            }
+
+            try {
+                Thread.sleep(chunkPauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return total;
+    }
+}
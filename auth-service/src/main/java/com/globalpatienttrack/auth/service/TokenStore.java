@@ -0,0 +1,39 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.entity.OAuthToken;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Where OAuth2Service keeps token state. Selected with oauth2.token-store.type:
+ * "jpa" (default) reads and writes oauth_tokens directly, "write-behind" serves
+ * everything from memory and persists to oauth_tokens asynchronously.
+ *
+ * Tokens handed out by a store are copies - change them only through the store.
+ */
+public interface TokenStore {
+
+    Optional<OAuthToken> findActiveByAccessTokenHash(byte[] accessTokenHash);
+
+    Optional<OAuthToken> findActiveByRefreshTokenHash(byte[] refreshTokenHash);
+
+    List<OAuthToken> findActiveByAccessTokenHashes(Collection<byte[]> accessTokenHashes);
+
+    void create(OAuthToken token);
+
+    void revoke(OAuthToken token);
+
+    /**
+     * Revokes every active token of the user and returns the tokens it revoked.
+     */
+    List<OAuthToken> revokeAllForUsername(String username);
+
+    /**
+     * Swaps in a new access token, but only if the token is still active and still carries
+     * the access token it was read with. Returns false when a concurrent rotation or revoke won.
+     */
+    boolean rotateAccessToken(OAuthToken token, byte[] accessTokenHash, LocalDateTime accessTokenExpiresAt);
+}
@@ -0,0 +1,432 @@
+package com.globalpatienttrack.auth.service;
+
+import com.globalpatienttrack.auth.entity.OAuthToken;
+import com.globalpatienttrack.auth.repository.OAuthTokenRepository;
+import com.globalpatienttrack.shared.security.TokenDigests;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token store that keeps every active token in memory and writes changes to oauth_tokens
+ * in the background, so logins, refreshes and revokes never wait on a database commit.
+ * Active tokens are reloaded from oauth_tokens on startup and pending writes are flushed
+ * on shutdown.
+ *
+ * Each token is guarded by one of a fixed set of lock stripes, picked by its refresh token
+ * (the one key that never changes), so unrelated tokens never contend. A token changed
+ * several times between flushes is written once, with its latest state.
+ *
+ * Memory is the source of truth while the process runs, which makes this store suitable
+ * for a single auth-service instance only: another instance would neither see tokens
+ * issued here nor notice revocations made here until it restarts.
+ */
+@Component
+@ConditionalOnProperty(name = "oauth2.token-store.type", havingValue = "write-behind")
+public class WriteBehindTokenStore implements TokenStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindTokenStore.class);
+
+    private static final int STRIPES = 64;
+
+    private final OAuthTokenRepository tokenRepository;
+
+    private final Object[] locks = new Object[STRIPES];
+
+    // Active tokens only, keyed by hex digest / username
+    private final Map<String, Entry> byAccessToken = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byRefreshToken = new ConcurrentHashMap<>();
+    private final Map<String, Set<Entry>> byUsername = new ConcurrentHashMap<>();
+
+    private final Queue<Entry> dirty = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @Value("${oauth2.token-store.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${oauth2.token-store.reload-page-size:1000}")
+    private int reloadPageSize;
+
+    @Value("${oauth2.token-store.flush-retry-initial-ms:1000}")
+    private long flushRetryInitialMillis;
+
+    @Value("${oauth2.token-store.flush-retry-max-ms:30000}")
+    private long flushRetryMaxMillis;
+
+    // Guarded by this - set while the database is failing, flushes wait until retryAtNanos
+    private long retryBackoffMillis;
+    private long retryAtNanos;
+
+    private final Timer flushTimer;
+    private final Counter flushedRows;
+    private final Counter failedRows;
+
+    public WriteBehindTokenStore(OAuthTokenRepository tokenRepository, MeterRegistry meterRegistry) {
+        this.tokenRepository = tokenRepository;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.flushTimer = Timer.builder("auth.token.store.flush")
+                .description("Time to write one batch of token changes to oauth_tokens")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.flushedRows = meterRegistry.counter("auth.token.store.flushed.rows");
+        this.failedRows = meterRegistry.counter("auth.token.store.flush.failures");
+        Gauge.builder("auth.token.store.pending", pending, AtomicInteger::get)
+                .description("Token changes not yet written to oauth_tokens")
+                .register(meterRegistry);
+        Gauge.builder("auth.token.store.active", byRefreshToken, Map::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void reload() {
+        LocalDateTime now = LocalDateTime.now();
+        long afterId = 0;
+        int loaded = 0;
+        List<OAuthToken> page;
+        do {
+            page = tokenRepository.findActiveAfterId(now, afterId, PageRequest.of(0, reloadPageSize));
+            for (OAuthToken token : page) {
+                Entry entry = new Entry(copyOf(token));
+                synchronized (lockFor(entry)) {
+                    index(entry);
+                }
+                afterId = token.getId();
+            }
+            loaded += page.size();
+        } while (page.size() == reloadPageSize);
+        logger.info("Loaded {} active oauth tokens into the write-behind token store", loaded);
+    }
+
+    @Override
+    public Optional<OAuthToken> findActiveByAccessTokenHash(byte[] accessTokenHash) {
+        Entry entry = byAccessToken.get(TokenDigests.toHex(accessTokenHash));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        synchronized (lockFor(entry)) {
+            OAuthToken state = entry.state;
+            if (!state.isActive() || !Arrays.equals(state.getAccessTokenHash(), accessTokenHash)) {
+                return Optional.empty();
+            }
+            return Optional.of(copyOf(state));
+        }
+    }
+
+    @Override
+    public Optional<OAuthToken> findActiveByRefreshTokenHash(byte[] refreshTokenHash) {
+        Entry entry = byRefreshToken.get(TokenDigests.toHex(refreshTokenHash));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        synchronized (lockFor(entry)) {
+            return entry.state.isActive() ? Optional.of(copyOf(entry.state)) : Optional.empty();
+        }
+    }
+
+    @Override
+    public List<OAuthToken> findActiveByAccessTokenHashes(Collection<byte[]> accessTokenHashes) {
+        List<OAuthToken> tokens = new ArrayList<>(accessTokenHashes.size());
+        for (byte[] accessTokenHash : accessTokenHashes) {
+            findActiveByAccessTokenHash(accessTokenHash).ifPresent(tokens::add);
+        }
+        return tokens;
+    }
+
+    @Override
+    public void create(OAuthToken token) {
+        Entry entry = new Entry(copyOf(token));
+        synchronized (lockFor(entry)) {
+            index(entry);
+            markDirty(entry);
+        }
+    }
+
+    @Override
+    public void revoke(OAuthToken token) {
+        token.setActive(false);
+        token.setRevokedAt(LocalDateTime.now());
+        Entry entry = byRefreshToken.get(refreshKey(token));
+        if (entry != null) {
+            synchronized (lockFor(entry)) {
+                revokeLocked(entry, token.getRevokedAt());
+            }
+        }
+    }
+
+    @Override
+    public List<OAuthToken> revokeAllForUsername(String username) {
+        Set<Entry> entries = byUsername.get(username);
+        if (entries == null) {
+            return List.of();
+        }
+        List<OAuthToken> revoked = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Entry entry : List.copyOf(entries)) {
+            synchronized (lockFor(entry)) {
+                if (entry.state.isActive()) {
+                    revoked.add(copyOf(entry.state));
+                    revokeLocked(entry, now);
+                }
+            }
+        }
+        return revoked;
+    }
+
+    @Override
+    public boolean rotateAccessToken(OAuthToken token, byte[] accessTokenHash, LocalDateTime accessTokenExpiresAt) {
+        Entry entry = byRefreshToken.get(refreshKey(token));
+        if (entry == null) {
+            return false;
+        }
+        synchronized (lockFor(entry)) {
+            OAuthToken state = entry.state;
+            if (!state.isActive() || !Arrays.equals(state.getAccessTokenHash(), token.getAccessTokenHash())) {
+                return false;
+            }
+            byAccessToken.remove(TokenDigests.toHex(state.getAccessTokenHash()), entry);
+            state.setAccessTokenHash(accessTokenHash);
+            state.setAccessTokenExpiresAt(accessTokenExpiresAt);
+            byAccessToken.put(TokenDigests.toHex(accessTokenHash), entry);
+            markDirty(entry);
+            return true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${oauth2.token-store.flush-interval-ms:200}")
+    public void flush() {
+        flush(false);
+    }
+
+    /**
+     * Writes the changes pending when it starts, in batches. Rows that fail are queued again
+     * only once it is done, so a failing database cannot keep one flush going forever; after
+     * a failure the next flushes wait, backing off exponentially until a write succeeds.
+     */
+    private synchronized void flush(boolean force) {
+        if (!force && retryBackoffMillis > 0 && System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+        int remaining = pending.get();
+        List<Entry> failed = new ArrayList<>();
+        boolean healthy = true;
+        while (remaining > 0 && healthy) {
+            List<Entry> batch = new ArrayList<>(Math.min(flushBatchSize, remaining));
+            Entry next;
+            while (batch.size() < flushBatchSize && batch.size() < remaining && (next = dirty.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            remaining -= batch.size();
+            pending.addAndGet(-batch.size());
+            healthy = write(batch, failed);
+        }
+
+        for (Entry entry : failed) {
+            synchronized (lockFor(entry)) {
+                markDirty(entry);
+            }
+        }
+        if (healthy) {
+            retryBackoffMillis = 0;
+        } else {
+            retryBackoffMillis = retryBackoffMillis == 0 ? flushRetryInitialMillis
+                    : Math.min(flushRetryMaxMillis, retryBackoffMillis * 2);
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryBackoffMillis);
+            logger.warn("Writing oauth tokens failed, {} changes pending, next attempt in {} ms",
+                    pending.get(), retryBackoffMillis);
+        }
+    }
+
+    /**
+     * Forgets tokens whose refresh token has expired; TokenPurgeService removes their rows.
+     */
+    @Scheduled(fixedDelayString = "${oauth2.token-store.prune-interval-ms:60000}")
+    public void pruneExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Entry entry : byRefreshToken.values()) {
+            synchronized (lockFor(entry)) {
+                if (entry.state.isActive() && now.isAfter(entry.state.getRefreshTokenExpiresAt())) {
+                    unindex(entry);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // One last attempt, even while backing off
+        flush(true);
+        if (pending.get() > 0) {
+            logger.warn("{} oauth token changes could not be written before shutdown", pending.get());
+        }
+    }
+
+    /**
+     * Writes one batch; rows that could not be written are added to failed. Returns false when
+     * the database itself seems to be failing, so the flush should stop.
+     */
+    private boolean write(List<Entry> batch, List<Entry> failed) {
+        long start = System.nanoTime();
+        try {
+            List<OAuthToken> saved = tokenRepository.saveAll(snapshot(batch));
+            for (int i = 0; i < batch.size(); i++) {
+                written(batch.get(i), saved.get(i));
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // The whole batch rolled back - retry row by row so one bad row cannot hold back the rest
+            logger.debug("Batch write of {} oauth tokens failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                if (!writeOne(batch.get(i))) {
+                    // Not a bad row but a failing database - leave the rest for later
+                    failed.addAll(batch.subList(i, batch.size()));
+                    failedRows.increment(batch.size() - i);
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Returns false if the row could not be written and should be retried.
+     */
+    private boolean writeOne(Entry entry) {
+        try {
+            written(entry, tokenRepository.save(snapshot(List.of(entry)).get(0)));
+            return true;
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // The row was changed or purged behind our back - the database wins
+            failedRows.increment();
+            logger.warn("oauth token {} changed outside the token store, dropping it from memory", entry.key);
+            synchronized (lockFor(entry)) {
+                unindex(entry);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write oauth token {}, will retry: {}", entry.key, e.getMessage());
+            return false;
+        }
+    }
+
+    private List<OAuthToken> snapshot(List<Entry> batch) {
+        List<OAuthToken> rows = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            synchronized (lockFor(entry)) {
+                entry.queued = false;
+                rows.add(copyOf(entry.state));
+            }
+        }
+        return rows;
+    }
+
+    private void written(Entry entry, OAuthToken saved) {
+        flushedRows.increment();
+        synchronized (lockFor(entry)) {
+            entry.state.setId(saved.getId());
+            entry.state.setVersion(saved.getVersion());
+        }
+    }
+
+    private void revokeLocked(Entry entry, LocalDateTime revokedAt) {
+        if (!entry.state.isActive()) {
+            return;
+        }
+        entry.state.setActive(false);
+        entry.state.setRevokedAt(revokedAt);
+        unindex(entry);
+        markDirty(entry);
+    }
+
+    private void index(Entry entry) {
+        byRefreshToken.put(entry.key, entry);
+        byAccessToken.put(TokenDigests.toHex(entry.state.getAccessTokenHash()), entry);
+        byUsername.compute(entry.state.getUsername(), (username, entries) -> {
+            Set<Entry> set = entries != null ? entries : ConcurrentHashMap.newKeySet();
+            set.add(entry);
+            return set;
+        });
+    }
+
+    private void unindex(Entry entry) {
+        byRefreshToken.remove(entry.key, entry);
+        byAccessToken.remove(TokenDigests.toHex(entry.state.getAccessTokenHash()), entry);
+        byUsername.computeIfPresent(entry.state.getUsername(), (username, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+
+    private void markDirty(Entry entry) {
+        if (!entry.queued) {
+            entry.queued = true;
+            dirty.add(entry);
+            pending.incrementAndGet();
+        }
+    }
+
+    private Object lockFor(Entry entry) {
+        return locks[Math.floorMod(entry.key.hashCode(), STRIPES)];
+    }
+
+    private static String refreshKey(OAuthToken token) {
+        return TokenDigests.toHex(token.getRefreshTokenHash());
+    }
+
+    private static OAuthToken copyOf(OAuthToken token) {
+        OAuthToken copy = new OAuthToken(token.getAccessTokenHash(), token.getRefreshTokenHash(),
+            token.getUsername(), token.getRole(), token.getAccessTokenExpiresAt(), token.getRefreshTokenExpiresAt());
+        copy.setId(token.getId());
+        copy.setVersion(token.getVersion());
+        copy.setUserId(token.getUserId());
+        copy.setOrganizationId(token.getOrganizationId());
+        copy.setCreatedAt(token.getCreatedAt());
+        copy.setRevokedAt(token.getRevokedAt());
+        copy.setActive(token.isActive());
+        return copy;
+    }
+
+    private static final class Entry {
+        // Hex digest of the refresh token - picks the lock stripe
+        private final String key;
+        // Guarded by the entry's lock stripe
+        private final OAuthToken state;
+        private boolean queued;
+
+        private Entry(OAuthToken state) {
+            this.key = TokenDigests.toHex(state.getRefreshTokenHash());
+            this.state = state;
+        }
+    }
+}
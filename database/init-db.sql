@@ -35,6 +35,7 @@ CREATE TABLE IF NOT EXISTS usersdata (
   role VARCHAR(50),
   organization_id BIGINT,
   active BIT DEFAULT 1,
+  credentials_version BIGINT NOT NULL DEFAULT 0,
   created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   FOREIGN KEY (organization_id) REFERENCES organizations(id)
@@ -82,15 +83,20 @@ CREATE TABLE IF NOT EXISTS patient_history (
 -- ============================================
 CREATE TABLE IF NOT EXISTS oauth_tokens (
   id BIGINT AUTO_INCREMENT PRIMARY KEY,
-  access_token VARCHAR(500) UNIQUE,
-  refresh_token VARCHAR(500) UNIQUE,
+  access_token_hash BINARY(32) NOT NULL UNIQUE,
+  refresh_token_hash BINARY(32) NOT NULL UNIQUE,
   username VARCHAR(100) NOT NULL,
   role VARCHAR(50) NOT NULL,
+  user_id BIGINT,
+  organization_id BIGINT,
   access_token_expires_at DATETIME NOT NULL,
   refresh_token_expires_at DATETIME NOT NULL,
   created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   revoked_at DATETIME,
-  active BIT DEFAULT 1
+  active BIT DEFAULT 1,
+  version BIGINT NOT NULL DEFAULT 0,
+  INDEX idx_oauth_tokens_refresh_expiry (refresh_token_expires_at),
+  INDEX idx_oauth_tokens_active_revoked (active, revoked_at)
 );
 
 -- ============================================
@@ -0,0 +1,31 @@
+-- ============================================
+-- OAUTH_TOKENS: RAW TOKEN COLUMNS -> SHA-256 DIGESTS
+-- ============================================
+-- Run once against an existing database before deploying the auth-service
+-- version that looks tokens up by digest. Existing sessions stay valid: the
+-- digests are computed from the stored tokens (SHA2 over the UTF-8 token
+-- matches the digest auth-service computes).
+USE global_patient_track_db;
+
+-- 1. Add the digest columns (nullable until backfilled)
+ALTER TABLE oauth_tokens
+  ADD COLUMN access_token_hash BINARY(32) NULL,
+  ADD COLUMN refresh_token_hash BINARY(32) NULL;
+
+-- 2. Backfill digests for existing rows
+UPDATE oauth_tokens
+SET access_token_hash = UNHEX(SHA2(access_token, 256)),
+    refresh_token_hash = UNHEX(SHA2(refresh_token, 256))
+WHERE access_token_hash IS NULL;
+
+-- 3. Enforce the new keys
+ALTER TABLE oauth_tokens
+  MODIFY access_token_hash BINARY(32) NOT NULL,
+  MODIFY refresh_token_hash BINARY(32) NOT NULL,
+  ADD UNIQUE INDEX uk_oauth_tokens_access_token_hash (access_token_hash),
+  ADD UNIQUE INDEX uk_oauth_tokens_refresh_token_hash (refresh_token_hash);
+
+-- 4. Drop the raw token columns (and their wide unique indexes)
+ALTER TABLE oauth_tokens
+  DROP COLUMN access_token,
+  DROP COLUMN refresh_token;
@@ -0,0 +1,9 @@
+-- ============================================
+-- OAUTH_TOKENS: ROW VERSION FOR REFRESH ROTATION
+-- ============================================
+-- Refresh rotates the access token with a single conditional UPDATE that
+-- checks this version, so concurrent refreshes cannot lose updates.
+USE global_patient_track_db;
+
+ALTER TABLE oauth_tokens
+  ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- ============================================
+-- USERSDATA: CREDENTIALS VERSION
+-- ============================================
+-- auth-service keeps a near-cache of login credentials. user-data-service
+-- bumps this version on every credential change and tells auth-service,
+-- which drops any cached copy older than the new version.
+USE global_patient_track_db;
+
+ALTER TABLE usersdata
+  ADD COLUMN credentials_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,11 @@
+-- ============================================
+-- OAUTH_TOKENS: CALLER IDENTITY
+-- ============================================
+-- Sessions carry the user's id and organization, so validation and signed
+-- access tokens can report them without a call to user-data-service.
+-- Sessions issued before this migration simply have none.
+USE global_patient_track_db;
+
+ALTER TABLE oauth_tokens
+  ADD COLUMN user_id BIGINT NULL,
+  ADD COLUMN organization_id BIGINT NULL;
@@ -0,0 +1,10 @@
+-- ============================================
+-- OAUTH_TOKENS: CLEANUP INDEXES
+-- ============================================
+-- The scheduled token purge pages through expired and long-revoked
+-- sessions; without these indexes every page scans the whole table.
+USE global_patient_track_db;
+
+ALTER TABLE oauth_tokens
+  ADD INDEX idx_oauth_tokens_refresh_expiry (refresh_token_expires_at),
+  ADD INDEX idx_oauth_tokens_active_revoked (active, revoked_at);
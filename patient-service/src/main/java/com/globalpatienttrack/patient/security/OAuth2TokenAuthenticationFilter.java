@@ -1,5 +1,8 @@
 package com.globalpatienttrack.patient.security;
 
+import com.globalpatienttrack.shared.security.IdentityEnvelope;
+import com.globalpatienttrack.shared.security.SignedTokenCodec;
+import com.globalpatienttrack.shared.security.TokenClaims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,6 +29,22 @@ public class OAuth2TokenAuthenticationFilter extends OncePerRequestFilter {
     @Value("${service.auth-service-url}")
     private String authServiceUrl;
 
+    @Value("${oauth2.token.signing-key:}")
+    private String tokenSigningKey;
+
+    @Value("${gateway.identity.signing-key:}")
+    private String identitySigningKey;
+
+    private SignedTokenCodec signedTokenCodec;
+
+    private IdentityEnvelope identityEnvelope;
+
+    @Override
+    protected void initFilterBean() {
+        signedTokenCodec = SignedTokenCodec.fromKey(tokenSigningKey);
+        identityEnvelope = IdentityEnvelope.fromKey(identitySigningKey);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -37,10 +56,32 @@ public class OAuth2TokenAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
         
+        // The gateway already validated the token and signed the caller's identity
+        TokenClaims identity = identityEnvelope != null ? identityEnvelope.verify(request.getHeader(IdentityEnvelope.HEADER)) : null;
+        if (identity != null) {
+            authenticate(identity);
+            filterChain.doFilter(request, response);
+            return;
+        }
+
         String authHeader = request.getHeader("Authorization");
         
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
+
+            // Signed tokens: the signature is checked locally, but only auth-service knows whether the
+            // session was revoked since - requests through the gateway carry an identity envelope instead
+            if (signedTokenCodec != null && SignedTokenCodec.looksSigned(token)) {
+                TokenClaims signedClaims = signedTokenCodec.verify(token);
+                if (signedClaims == null || !isActive(token)) {
+                    // Forged, tampered, expired or revoked - never fall back to decoding it unverified
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token");
+                    return;
+                }
+                authenticate(signedClaims);
+                filterChain.doFilter(request, response);
+                return;
+            }
             
             try {
                 // Validate token with auth service
@@ -71,4 +112,26 @@ public class OAuth2TokenAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+
+    // Whether auth-service still considers the token's session active
+    private boolean isActive(String token) {
+        try {
+            Map<?, ?> tokenInfo = restTemplate.getForObject(authServiceUrl + "/auth/validate?token=" + token, Map.class);
+            return tokenInfo != null && Boolean.TRUE.equals(tokenInfo.get("active"));
+        } catch (Exception e) {
+            logger.warn("Could not confirm signed token with auth service: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void authenticate(TokenClaims claims) {
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(
+                        claims.getUsername(),
+                        null,
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + claims.getRole()))
+                );
+        authentication.setDetails(claims.toIntrospection());
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
 }
@@ -0,0 +1,169 @@
+package com.globalpatienttrack.shared.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Bounded in-memory cache in which every entry carries its own expiry, on Caffeine: when
+ * full it evicts the entries least likely to be used again, and expired entries are
+ * removed in amortized constant time rather than by scanning.
+ *
+ * Fills are guarded per key against a racing invalidation: take a {@link #stamp()} before
+ * loading the value and pass it to {@link #put}. If that key was invalidated (or the cache
+ * cleared) after the stamp, the value may be stale and is not kept. Invalidations are
+ * remembered for maxLoadTime; loads that took longer are not kept either.
+ */
+public final class ExpiringCache<K, V> {
+
+    private final Cache<K, Entry<V>> entries;
+
+    // key -> System.nanoTime() of its last invalidation
+    private final Cache<K, Long> invalidatedAt;
+
+    private final long maxLoadNanos;
+
+    // System.nanoTime() of the last clear(), or of an invalidation forgotten because too many were recorded
+    private volatile long clearedAt = System.nanoTime();
+
+    public ExpiringCache(long maxSize, Duration maxLoadTime) {
+        this(maxSize, maxLoadTime, null);
+    }
+
+    /**
+     * onEviction is called for entries dropped because they expired or the cache was full.
+     */
+    public ExpiringCache(long maxSize, Duration maxLoadTime, RemovalListener<K, V> onEviction) {
+        this.maxLoadNanos = maxLoadTime.toNanos();
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maxSize);
+        this.entries = builder
+                .expireAfter(new Expiry<K, Entry<V>>() {
+                    @Override
+                    public long expireAfterCreate(K key, Entry<V> entry, long currentTime) {
+                        return entry.remainingNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, Entry<V> entry, long currentTime, long currentDuration) {
+                        return entry.remainingNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, Entry<V> entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .evictionListener((K key, Entry<V> entry, RemovalCause cause) -> {
+                    if (onEviction != null && entry != null) {
+                        onEviction.onRemoval(key, entry.value, cause);
+                    }
+                })
+                .build();
+        this.invalidatedAt = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxLoadNanos, TimeUnit.NANOSECONDS)
+                .evictionListener((K key, Long at, RemovalCause cause) -> {
+                    // Forgotten while a racing load may still be running - distrust every such load
+                    if (cause == RemovalCause.SIZE) {
+                        clearedAt = System.nanoTime();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * The value, or null when absent or expired.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.getIfPresent(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Stamp to take before loading a value; pass it back to {@link #put}.
+     */
+    public long stamp() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Keeps the value until expiresAtMillis (epoch), unless the key was invalidated since the stamp.
+     */
+    public void put(K key, V value, long expiresAtMillis, long stamp) {
+        merge(key, value, expiresAtMillis, stamp, (current, fresh) -> fresh);
+    }
+
+    /**
+     * Like {@link #put}, but resolve picks between an existing value and the new one.
+     */
+    public void merge(K key, V value, long expiresAtMillis, long stamp, BinaryOperator<V> resolve) {
+        if (expiresAtMillis <= System.currentTimeMillis() || System.nanoTime() - stamp > maxLoadNanos) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, expiresAtMillis);
+        entries.asMap().merge(key, entry, (current, fresh) ->
+                resolve.apply(current.value, fresh.value) == current.value ? current : fresh);
+
+        // Invalidated after the load started - the value may be stale
+        Long invalidated = invalidatedAt.getIfPresent(key);
+        if ((invalidated != null && invalidated - stamp >= 0) || clearedAt - stamp >= 0) {
+            entries.asMap().remove(key, entry);
+        }
+    }
+
+    /**
+     * Drops the key; returns whether a value was cached.
+     */
+    public boolean invalidate(K key) {
+        return invalidate(key, value -> true);
+    }
+
+    /**
+     * Drops the key's value if stale says so, and keeps fills that started earlier out.
+     */
+    public boolean invalidate(K key, Predicate<V> stale) {
+        invalidatedAt.put(key, System.nanoTime());
+        boolean[] removed = {false};
+        entries.asMap().computeIfPresent(key, (k, entry) -> {
+            if (stale.test(entry.value)) {
+                removed[0] = true;
+                return null;
+            }
+            return entry;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Drops everything, including fills already under way.
+     */
+    public void clear() {
+        clearedAt = System.nanoTime();
+        entries.invalidateAll();
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtMillis;
+
+        private Entry(V value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private long remainingNanos() {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiresAtMillis - System.currentTimeMillis()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.globalpatienttrack.shared.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classic token bucket: holds up to {@code capacity} permits and refills continuously
+ * at {@code refillPerSecond}. Refill is computed lazily on access, so idle buckets cost nothing.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNanosecond;
+
+    private double available;
+    private long lastRefillNanos;
+
+    public TokenBucket(long capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNanosecond = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.available = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized boolean tryConsume() {
+        refill();
+        if (available >= 1) {
+            available -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whole permits left after the last refill.
+     */
+    public synchronized long getAvailablePermits() {
+        refill();
+        return (long) available;
+    }
+
+    /**
+     * Seconds until at least one permit is available, rounded up (0 if one is available now).
+     */
+    public synchronized long getSecondsUntilNextPermit() {
+        refill();
+        if (available >= 1) {
+            return 0;
+        }
+        double nanos = (1 - available) / refillPerNanosecond;
+        return Math.max(1, (long) Math.ceil(nanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * True once the bucket has refilled completely, i.e. forgetting it changes nothing.
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return available >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefillNanos) * refillPerNanosecond);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,107 @@
+package com.globalpatienttrack.shared.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder with a pinned work factor, plus a calibration tool that picks the highest
+ * cost fitting a per-hash latency budget on the hardware it runs on:
+ * {@code java -cp shared-library.jar:spring-security-crypto.jar:slf4j-api.jar
+ * com.globalpatienttrack.shared.security.CalibratedBCryptPasswordEncoder [targetMs]}.
+ * Calibrating at startup (cost 0) is opt-in, for single-node setups only.
+ *
+ * {@link #upgradeEncoding} reports every hash whose cost differs from this encoder's cost
+ * (higher or lower), regardless of the $2a$/$2b$/$2y$ prefix, so callers can re-hash
+ * after a successful match. Every node must therefore use the same cost, otherwise hashes
+ * would be re-hashed back and forth between nodes.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    public static final int MIN_COST = 4;
+    public static final int MAX_COST = 31;
+
+    private static final int PROBE_COST = 8;
+    private static final int PROBE_ROUNDS = 5;
+
+    private final int cost;
+
+    public CalibratedBCryptPasswordEncoder(int cost) {
+        super(cost);
+        this.cost = cost;
+    }
+
+    /**
+     * Builds an encoder with a fixed cost, or - when fixedCost is 0 - the highest cost
+     * within [minCost, maxCost] whose hash time stays within targetMillis.
+     */
+    public static CalibratedBCryptPasswordEncoder create(int fixedCost, long targetMillis, int minCost, int maxCost) {
+        if (fixedCost > 0) {
+            return new CalibratedBCryptPasswordEncoder(fixedCost);
+        }
+        int calibrated = calibrate(targetMillis, Math.max(MIN_COST, minCost), Math.min(MAX_COST, maxCost));
+        return new CalibratedBCryptPasswordEncoder(calibrated);
+    }
+
+    /**
+     * Times a cheap probe cost and extrapolates: every extra cost step doubles the work.
+     */
+    public static int calibrate(long targetMillis, int minCost, int maxCost) {
+        String salt = BCrypt.gensalt(PROBE_COST);
+        BCrypt.hashpw("calibration", salt); // warm up the JIT before timing
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_ROUNDS; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double probeMillis = best / 1_000_000.0;
+        int cost = minCost;
+        while (cost < maxCost && probeMillis * Math.pow(2, cost + 1 - PROBE_COST) <= targetMillis) {
+            cost++;
+        }
+        logger.info("BCrypt cost {} selected: cost {} hashes in {} ms, budget is {} ms (expected ~{} ms)",
+                cost, PROBE_COST, String.format("%.2f", probeMillis), targetMillis,
+                Math.round(probeMillis * Math.pow(2, cost - PROBE_COST)));
+        return cost;
+    }
+
+    /**
+     * Prints the cost that fits the budget (default 250 ms) on this machine, to pin in
+     * password-hashing.bcrypt.cost on every auth-service and user-data-service node.
+     */
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        System.out.println(calibrate(targetMillis, 10, 14));
+    }
+
+    /**
+     * The cost encoded in a BCrypt hash, or -1 if it is not a BCrypt hash.
+     */
+    public static int costOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$'
+                || encodedPassword.charAt(3) != '$' || encodedPassword.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int current = costOf(encodedPassword);
+        return current != -1 && current != cost;
+    }
+}
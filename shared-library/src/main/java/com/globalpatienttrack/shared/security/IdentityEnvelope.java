@@ -0,0 +1,53 @@
+package com.globalpatienttrack.shared.security;
+
+/**
+ * Signed identity the gateway attaches to a request after validating its token, so the
+ * services can authenticate the caller by checking an HMAC instead of calling
+ * /auth/validate again. The envelope is a {@link SignedTokenCodec} token of its own type
+ * and lives only seconds: it can never be used as an access token, and a copy leaked from
+ * inside the network expires almost at once. The gateway removes any envelope sent by clients.
+ */
+public class IdentityEnvelope {
+
+    public static final String HEADER = "X-Identity-Envelope";
+
+    private static final String TYPE = "GPT-IDENTITY";
+
+    private final SignedTokenCodec codec;
+    private final long ttlSeconds;
+
+    public IdentityEnvelope(String secret, long ttlSeconds) {
+        this.codec = new SignedTokenCodec(secret, TYPE);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Builds an envelope from a configured key, or returns null when envelopes are not configured.
+     */
+    public static IdentityEnvelope fromKey(String secret, long ttlSeconds) {
+        return secret == null || secret.isBlank() ? null : new IdentityEnvelope(secret, ttlSeconds);
+    }
+
+    /**
+     * For services, which only verify envelopes.
+     */
+    public static IdentityEnvelope fromKey(String secret) {
+        return fromKey(secret, 0);
+    }
+
+    /**
+     * Signs the caller's identity; the envelope expires after the TTL or with the token, whichever is first.
+     */
+    public String issue(String username, String role, Long userId, Long organizationId, long tokenExpiresAt) {
+        long now = System.currentTimeMillis() / 1000;
+        long expiresAt = tokenExpiresAt > 0 ? Math.min(tokenExpiresAt, now + ttlSeconds) : now + ttlSeconds;
+        return codec.issue(new TokenClaims(username, role, userId, organizationId, now, expiresAt, null));
+    }
+
+    /**
+     * Returns the identity of a correctly signed, unexpired envelope, or null otherwise.
+     */
+    public TokenClaims verify(String envelope) {
+        return codec.verify(envelope);
+    }
+}
@@ -0,0 +1,51 @@
+package com.globalpatienttrack.shared.security;
+
+/**
+ * Proof that a request comes from another service of this system, for the internal endpoints
+ * that change state (password re-hash, credential invalidation, session revocation). It is a
+ * {@link SignedTokenCodec} token of its own type under the shared internal.service-key, signed
+ * anew for every call and valid for one minute, so it can never pass as an access token or
+ * an identity envelope. Services without the key configured cannot call, nor be called on,
+ * those endpoints.
+ */
+public class ServiceCredential {
+
+    public static final String HEADER = "X-Service-Credential";
+
+    public static final String ROLE = "SERVICE";
+
+    private static final String TYPE = "GPT-SERVICE";
+
+    private static final long TTL_SECONDS = 60;
+
+    private final SignedTokenCodec codec;
+    private final String serviceName;
+
+    public ServiceCredential(String secret, String serviceName) {
+        this.codec = new SignedTokenCodec(secret, TYPE);
+        this.serviceName = serviceName;
+    }
+
+    /**
+     * Builds a credential from a configured key, or returns null when the key is not configured.
+     */
+    public static ServiceCredential fromKey(String secret, String serviceName) {
+        return secret == null || secret.isBlank() ? null : new ServiceCredential(secret, serviceName);
+    }
+
+    /**
+     * Signs a fresh credential for one outgoing call.
+     */
+    public String issue() {
+        long now = System.currentTimeMillis() / 1000;
+        return codec.issue(new TokenClaims(serviceName, ROLE, null, null, now, now + TTL_SECONDS, null));
+    }
+
+    /**
+     * Returns the calling service's name for a correctly signed, unexpired credential, or null otherwise.
+     */
+    public String verify(String credential) {
+        TokenClaims claims = codec.verify(credential);
+        return claims != null && ROLE.equals(claims.getRole()) ? claims.getUsername() : null;
+    }
+}
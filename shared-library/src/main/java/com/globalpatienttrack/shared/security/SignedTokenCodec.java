@@ -0,0 +1,120 @@
+package com.globalpatienttrack.shared.security;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Issues and verifies compact HS256 tokens (header.payload.signature, JWT layout).
+ * Auth-service signs with the shared key; the gateway and the service filters verify
+ * locally with the same key instead of calling /auth/validate.
+ */
+public class SignedTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+
+    public static final String ACCESS_TOKEN_TYPE = "JWT";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final SecretKeySpec key;
+
+    // Carries the token type, so tokens of one type never verify as another even under the same key
+    private final String encodedHeader;
+
+    // Mac is not thread-safe; keep one initialised instance per thread
+    private final ThreadLocal<Mac> macs;
+
+    public SignedTokenCodec(String secret) {
+        this(secret, ACCESS_TOKEN_TYPE);
+    }
+
+    public SignedTokenCodec(String secret, String type) {
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length < MIN_KEY_BYTES) {
+            throw new IllegalArgumentException("Token signing key must be at least " + MIN_KEY_BYTES + " bytes");
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.encodedHeader = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("{\"alg\":\"HS256\",\"typ\":\"" + type + "\"}").getBytes(StandardCharsets.UTF_8));
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Builds a codec from a configured key, or returns null when signed tokens are not configured.
+     */
+    public static SignedTokenCodec fromKey(String secret) {
+        return secret == null || secret.isBlank() ? null : new SignedTokenCodec(secret);
+    }
+
+    /**
+     * Opaque tokens are plain random strings; signed tokens always have exactly two dots.
+     */
+    public static boolean looksSigned(String token) {
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        return first > 0 && last > first + 1 && token.indexOf('.', first + 1) == last;
+    }
+
+    public String issue(TokenClaims claims) {
+        try {
+            String payload = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(MAPPER.writeValueAsBytes(claims));
+            String signingInput = encodedHeader + "." + payload;
+            return signingInput + "." + sign(signingInput);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to sign token", e);
+        }
+    }
+
+    /**
+     * Returns the claims of a correctly signed, unexpired token, or null otherwise.
+     */
+    public TokenClaims verify(String token) {
+        if (token == null || !looksSigned(token)) {
+            return null;
+        }
+        int lastDot = token.lastIndexOf('.');
+        String signingInput = token.substring(0, lastDot);
+        if (!signingInput.startsWith(encodedHeader + ".")) {
+            return null;
+        }
+
+        byte[] expected = sign(signingInput).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(lastDot + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(signingInput.substring(encodedHeader.length() + 1));
+            TokenClaims claims = MAPPER.readValue(payload, TokenClaims.class);
+            return claims.isExpired() ? null : claims;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String sign(String signingInput) {
+        byte[] signature = macs.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.globalpatienttrack.shared.security;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Claims carried inside a signed access token. Uses the registered JWT claim names
+ * (sub, iat, exp, jti) so the payload stays readable by standard tooling.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenClaims {
+
+    @JsonProperty("sub")
+    private String username;
+
+    private String role;
+
+    private Long userId;
+
+    private Long organizationId;
+
+    @JsonProperty("iat")
+    private long issuedAt; // epoch seconds
+
+    @JsonProperty("exp")
+    private long expiresAt; // epoch seconds
+
+    @JsonProperty("jti")
+    private String tokenId;
+
+    public TokenClaims() {
+    }
+
+    public TokenClaims(String username, String role, Long userId, Long organizationId,
+                       long issuedAt, long expiresAt, String tokenId) {
+        this.username = username;
+        this.role = role;
+        this.userId = userId;
+        this.organizationId = organizationId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+        this.tokenId = tokenId;
+    }
+
+    @JsonIgnore
+    public boolean isExpired() {
+        return System.currentTimeMillis() / 1000 >= expiresAt;
+    }
+
+    /**
+     * Same shape as the /auth/validate response, so callers can treat both paths alike.
+     * expiresAt is the same ISO local date-time, in the (shared) system time zone.
+     */
+    public Map<String, Object> toIntrospection() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("username", username);
+        map.put("role", role);
+        map.put("active", true);
+        map.put("expiresAt", LocalDateTime.ofInstant(Instant.ofEpochSecond(expiresAt), ZoneId.systemDefault()).toString());
+        if (userId != null) {
+            map.put("userId", userId);
+        }
+        if (organizationId != null) {
+            map.put("organizationId", organizationId);
+        }
+        return map;
+    }
+
+    // Getters and Setters
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getOrganizationId() {
+        return organizationId;
+    }
+
+    public void setOrganizationId(Long organizationId) {
+        this.organizationId = organizationId;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public void setIssuedAt(long issuedAt) {
+        this.issuedAt = issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(String tokenId) {
+        this.tokenId = tokenId;
+    }
+}
@@ -0,0 +1,54 @@
+package com.globalpatienttrack.shared.security;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Random bearer tokens and token ids. Each thread owns its own DRBG instance, so
+ * concurrent logins and refreshes never queue on the single SecureRandom behind
+ * UUID.randomUUID(). Random bytes are base64url-encoded straight into the result string.
+ */
+public final class TokenGenerator {
+
+    public static final int TOKEN_BYTES = 32;   // 256 bits, 43 characters
+    public static final int TOKEN_ID_BYTES = 16; // 128 bits, 22 characters
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(TokenGenerator::newRandom);
+
+    private static final ThreadLocal<byte[]> TOKEN_BUFFER = ThreadLocal.withInitial(() -> new byte[TOKEN_BYTES]);
+    private static final ThreadLocal<byte[]> TOKEN_ID_BUFFER = ThreadLocal.withInitial(() -> new byte[TOKEN_ID_BYTES]);
+
+    private TokenGenerator() {
+    }
+
+    /**
+     * A new opaque access or refresh token.
+     */
+    public static String newToken() {
+        return next(TOKEN_BUFFER.get());
+    }
+
+    /**
+     * A new unique id, e.g. the jti of a signed token.
+     */
+    public static String newTokenId() {
+        return next(TOKEN_ID_BUFFER.get());
+    }
+
+    private static String next(byte[] buffer) {
+        RANDOM.get().nextBytes(buffer);
+        return ENCODER.encodeToString(buffer);
+    }
+
+    private static SecureRandom newRandom() {
+        // The platform default (NativePRNG on Linux) serialises every caller on one global lock
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -47,6 +47,22 @@ public class UserController {
         return ResponseEntity.ok(authUser);
     }
 
+    // Internal endpoint for auth-service - replaces a hash with a re-hash of the same password
+    // Requires a service credential (X-Service-Credential, see SecurityConfig)
+    // Body: {"expectedHash": "$2a$10$...", "newHash": "$2a$12$..."}; 409 if the stored hash changed meanwhile
+    @PutMapping("/internal/auth/{username}/password-hash")
+    public ResponseEntity<Void> rehashPassword(@PathVariable("username") String username,
+                                               @RequestBody java.util.Map<String, String> request) {
+        String expectedHash = request.get("expectedHash");
+        String newHash = request.get("newHash");
+        if (expectedHash == null || newHash == null) {
+            throw new RuntimeException("expectedHash and newHash are required");
+        }
+        return userService.rehashPassword(username, expectedHash, newHash)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(org.springframework.http.HttpStatus.CONFLICT).build();
+    }
+
     // Internal endpoints for service-to-service calls (no authentication required)
     @GetMapping("/internal/user/{id}")
     public ResponseEntity<UserDto> getInternalUserById(@PathVariable("id") Long id) {
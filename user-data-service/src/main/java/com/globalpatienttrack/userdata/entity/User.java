@@ -41,6 +41,10 @@ public class User {
     @Column(nullable = false)
     private boolean active = true;
     
+    // Bumped whenever password, role, organization or active change - auth-service caches by it
+    @Column(name = "credentials_version", nullable = false)
+    private long credentialsVersion;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -135,6 +139,14 @@ public class User {
         this.active = active;
     }
 
+    public long getCredentialsVersion() {
+        return credentialsVersion;
+    }
+
+    public void setCredentialsVersion(long credentialsVersion) {
+        this.credentialsVersion = credentialsVersion;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -3,9 +3,11 @@ package com.globalpatienttrack.userdata.repository;
 import com.globalpatienttrack.shared.model.UserRole;
 import com.globalpatienttrack.userdata.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -32,6 +34,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     boolean existsByEmail(String email);
 
+    // Compare-and-set: only replaces the hash the caller verified against, never a newer password
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newHash, u.credentialsVersion = u.credentialsVersion + 1 " +
+           "WHERE u.username = :username AND u.password = :expectedHash")
+    int replacePasswordHash(@Param("username") String username,
+                            @Param("expectedHash") String expectedHash,
+                            @Param("newHash") String newHash);
+
     @Query(value = "SELECT u.* FROM usersdata u JOIN patients p ON p.user_id = u.id WHERE p.id = :patientId", nativeQuery = true)
     Optional<User> findByPatientId(@Param("patientId") Long patientId);
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.globalpatienttrack.userdata.security;
 
+import com.globalpatienttrack.shared.security.IdentityEnvelope;
+import com.globalpatienttrack.shared.security.ServiceCredential;
+import com.globalpatienttrack.shared.security.SignedTokenCodec;
+import com.globalpatienttrack.shared.security.TokenClaims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -30,6 +34,31 @@ public class OAuth2TokenAuthenticationFilter extends OncePerRequestFilter {
     @Value("${service.auth-service-url:http://auth-service:8081}")
     private String authServiceUrl;
 
+    @Value("${oauth2.token.signing-key:}")
+    private String tokenSigningKey;
+
+    @Value("${gateway.identity.signing-key:}")
+    private String identitySigningKey;
+
+    @Value("${internal.service-key:}")
+    private String serviceKey;
+
+    @Value("${spring.application.name}")
+    private String serviceName;
+
+    private SignedTokenCodec signedTokenCodec;
+
+    private IdentityEnvelope identityEnvelope;
+
+    private ServiceCredential serviceCredential;
+
+    @Override
+    protected void initFilterBean() {
+        signedTokenCodec = SignedTokenCodec.fromKey(tokenSigningKey);
+        identityEnvelope = IdentityEnvelope.fromKey(identitySigningKey);
+        serviceCredential = ServiceCredential.fromKey(serviceKey, serviceName);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -37,16 +66,48 @@ public class OAuth2TokenAuthenticationFilter extends OncePerRequestFilter {
         // Skip authentication for public endpoints
         String requestPath = request.getRequestURI();
         if (requestPath.startsWith("/actuator/") || 
-            requestPath.contains("/internal/") ||
             requestPath.equals("/users/register")) {
             filterChain.doFilter(request, response);
             return;
         }
+
+        // Service-to-service endpoints: only a signed service credential authenticates here
+        if (requestPath.contains("/internal/")) {
+            String caller = serviceCredential != null ? serviceCredential.verify(request.getHeader(ServiceCredential.HEADER)) : null;
+            if (caller != null) {
+                SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                        caller, null, Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + ServiceCredential.ROLE))));
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
         
+        // The gateway already validated the token and signed the caller's identity
+        TokenClaims identity = identityEnvelope != null ? identityEnvelope.verify(request.getHeader(IdentityEnvelope.HEADER)) : null;
+        if (identity != null) {
+            authenticate(identity);
+            filterChain.doFilter(request, response);
+            return;
+        }
+
         String authHeader = request.getHeader("Authorization");
         
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
+
+            // Signed tokens: the signature is checked locally, but only auth-service knows whether the
+            // session was revoked since - requests through the gateway carry an identity envelope instead
+            if (signedTokenCodec != null && SignedTokenCodec.looksSigned(token)) {
+                TokenClaims signedClaims = signedTokenCodec.verify(token);
+                if (signedClaims == null || !isActive(token)) {
+                    // Forged, tampered, expired or revoked - never fall back to decoding it unverified
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token");
+                    return;
+                }
+                authenticate(signedClaims);
+                filterChain.doFilter(request, response);
+                return;
+            }
             
             try {
                 // Validate token with auth service
@@ -77,4 +138,26 @@ public class OAuth2TokenAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+
+    // Whether auth-service still considers the token's session active
+    private boolean isActive(String token) {
+        try {
+            Map<?, ?> tokenInfo = restTemplate.getForObject(authServiceUrl + "/auth/validate?token=" + token, Map.class);
+            return tokenInfo != null && Boolean.TRUE.equals(tokenInfo.get("active"));
+        } catch (Exception e) {
+            logger.warn("Could not confirm signed token with auth service: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void authenticate(TokenClaims claims) {
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(
+                        claims.getUsername(),
+                        null,
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + claims.getRole()))
+                );
+        authentication.setDetails(claims.toIntrospection());
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
 }
@@ -0,0 +1,96 @@
+package com.globalpatienttrack.userdata.service;
+
+import com.globalpatienttrack.shared.security.ServiceCredential;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells auth-service about user changes that affect logins.
+ *
+ * Session revocation goes to any one auth-service instance, since tokens live in the
+ * shared oauth_tokens table. Credential invalidations go to every registered auth-service
+ * instance, because each one keeps its own credential cache. A missed invalidation is not
+ * fatal: cached credentials also expire on their own (oauth2.credential-cache.ttl-seconds).
+ * Calls carry a service credential; without internal.service-key auth-service refuses them.
+ */
+@Component
+public class AuthServiceClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthServiceClient.class);
+
+    private final DiscoveryClient discoveryClient;
+
+    private final RestTemplate restTemplate;
+
+    // Not load-balanced: invalidations are addressed to individual instances
+    private final RestTemplate instanceRestTemplate;
+
+    private final ServiceCredential serviceCredential;
+
+    @Value("${service.auth-service-url}")
+    private String authServiceUrl;
+
+    @Value("${service.auth-service-id:auth-service}")
+    private String authServiceId;
+
+    public AuthServiceClient(DiscoveryClient discoveryClient, RestTemplate restTemplate,
+                             @Value("${service.auth-service-timeout-ms:2000}") int timeoutMillis,
+                             @Value("${internal.service-key:}") String serviceKey,
+                             @Value("${spring.application.name}") String serviceName) {
+        this.discoveryClient = discoveryClient;
+        this.serviceCredential = ServiceCredential.fromKey(serviceKey, serviceName);
+        this.restTemplate = restTemplate;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        this.instanceRestTemplate = new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Revokes every active session of the user. Failures are logged, not thrown - the user
+     * change itself has already been committed.
+     */
+    public void revokeSessions(String username) {
+        try {
+            restTemplate.postForObject(authServiceUrl + "/auth/internal/sessions/revoke",
+                    withCredential(Map.of("username", username)), Map.class);
+        } catch (Exception e) {
+            logger.error("Could not revoke sessions of {}: {}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops cached credentials older than credentialsVersion on every auth-service instance.
+     */
+    public void credentialsChanged(String username, long credentialsVersion) {
+        Map<String, Object> body = Map.of("username", username, "version", credentialsVersion);
+        List<ServiceInstance> instances = discoveryClient.getInstances(authServiceId);
+        for (ServiceInstance instance : instances) {
+            try {
+                instanceRestTemplate.postForObject(instance.getUri() + "/auth/internal/credentials/invalidate",
+                        withCredential(body), Map.class);
+            } catch (Exception e) {
+                logger.warn("Could not invalidate cached credentials of {} on {}: {}", username, instance.getUri(), e.getMessage());
+            }
+        }
+    }
+
+    private <T> HttpEntity<T> withCredential(T body) {
+        HttpHeaders headers = new HttpHeaders();
+        if (serviceCredential != null) {
+            headers.set(ServiceCredential.HEADER, serviceCredential.issue());
+        }
+        return new HttpEntity<>(body, headers);
+    }
+}
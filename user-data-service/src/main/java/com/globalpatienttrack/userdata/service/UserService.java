@@ -2,6 +2,7 @@ package com.globalpatienttrack.userdata.service;
 
 import com.globalpatienttrack.shared.dto.UserDto;
 import com.globalpatienttrack.shared.model.UserRole;
+import com.globalpatienttrack.shared.security.CalibratedBCryptPasswordEncoder;
 import com.globalpatienttrack.userdata.entity.User;
 import com.globalpatienttrack.userdata.entity.Organization;
 import com.globalpatienttrack.userdata.repository.UserRepository;
@@ -25,6 +26,9 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private AuthServiceClient authServiceClient;
+
     public UserDto createUser(UserDto userDto) {
         // Check if username or email already exists
         if (userRepository.existsByUsername(userDto.getUsername())) {
@@ -81,6 +85,7 @@ public class UserService {
         authData.put("email", user.getEmail());
         authData.put("role", user.getRole().name());
         authData.put("active", user.isActive());
+        authData.put("credentialsVersion", user.getCredentialsVersion());
         
         // Add organization info if available
         if (user.getOrganization() != null) {
@@ -91,6 +96,22 @@ public class UserService {
         return authData;
     }
 
+    /**
+     * Swaps a password hash for a re-hash of the same password (e.g. with a different BCrypt cost).
+     * Returns false if the stored hash is no longer expectedHash.
+     */
+    public boolean rehashPassword(String username, String expectedHash, String newHash) {
+        if (CalibratedBCryptPasswordEncoder.costOf(newHash) == -1) {
+            throw new RuntimeException("newHash is not a BCrypt hash");
+        }
+        if (userRepository.replacePasswordHash(username, expectedHash, newHash) == 0) {
+            return false;
+        }
+        userRepository.findByUsername(username)
+                .ifPresent(user -> authServiceClient.credentialsChanged(username, user.getCredentialsVersion()));
+        return true;
+    }
+
     public UserDto getUserByEmail(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -155,7 +176,7 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         user.setActive(true);
-        User updatedUser = userRepository.save(user);
+        User updatedUser = saveCredentialChange(user);
         return convertToDto(updatedUser);
     }
 
@@ -163,15 +184,25 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         user.setActive(false);
-        User updatedUser = userRepository.save(user);
+        User updatedUser = saveCredentialChange(user);
+        authServiceClient.revokeSessions(updatedUser.getUsername());
         return convertToDto(updatedUser);
     }
 
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new RuntimeException("User not found");
-        }
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("User not found"));
         userRepository.deleteById(id);
+        authServiceClient.credentialsChanged(user.getUsername(), user.getCredentialsVersion() + 1);
+        authServiceClient.revokeSessions(user.getUsername());
+    }
+
+    // Password, role, organization or active changed - bump the version so auth-service drops its cached copy
+    private User saveCredentialChange(User user) {
+        user.setCredentialsVersion(user.getCredentialsVersion() + 1);
+        User savedUser = userRepository.save(user);
+        authServiceClient.credentialsChanged(savedUser.getUsername(), savedUser.getCredentialsVersion());
+        return savedUser;
     }
 
     public boolean isOwner(String username, Long userId) {